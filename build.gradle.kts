@@ -20,4 +20,55 @@ java {
 }
 
 // Use Mojang mappings since we're targeting Paper only
-paperweight.reobfArtifactConfiguration = io.papermc.paperweight.userdev.ReobfArtifactConfiguration.MOJANG_PRODUCTION 
\ No newline at end of file
+paperweight.reobfArtifactConfiguration = io.papermc.paperweight.userdev.ReobfArtifactConfiguration.MOJANG_PRODUCTION 
+
+// JMH benchmarks for the packet interception paths, run with ./gradlew jmh
+val jmh: SourceSet by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+    runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[jmh.implementationConfigurationName].extendsFrom(configurations.compileOnly.get())
+configurations[jmh.runtimeOnlyConfigurationName].extendsFrom(configurations.compileOnly.get())
+
+dependencies {
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+}
+
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks with the GC allocation profiler."
+    classpath = jmh.runtimeClasspath
+    mainClass = "org.openjdk.jmh.Main"
+
+    val results = layout.buildDirectory.file("reports/jmh/results.json")
+    outputs.file(results)
+    doFirst { results.get().asFile.parentFile.mkdirs() }
+
+    // Narrow the run with -Pjmh.include=<regex>, e.g. -Pjmh.include=ChatPacketListener
+    args(providers.gradleProperty("jmh.include").getOrElse(".*"))
+    args("-prof", "gc", "-rf", "json", "-rff", results.get().asFile.path)
+}
+
+tasks.register<JavaExec>("loadTest") {
+    group = "benchmark"
+    description = "Runs the in-process chat broadcast load harness."
+    classpath = jmh.runtimeClasspath
+    mainClass = "com.jellypudding.blockReports.benchmark.LoadHarness"
+    args(
+        providers.gradleProperty("channels").getOrElse("2000"),
+        providers.gradleProperty("broadcasts").getOrElse("2000")
+    )
+}
+
+tasks.register<JavaExec>("replayCapture") {
+    group = "benchmark"
+    description = "Replays a packet capture through the interceptor, e.g. -Pcapture=capture.brcap."
+    classpath = jmh.runtimeClasspath
+    mainClass = "com.jellypudding.blockReports.benchmark.CaptureReplay"
+    args(
+        providers.gradleProperty("capture").getOrElse(""),
+        providers.gradleProperty("iterations").getOrElse("10")
+    )
+}
@@ -0,0 +1,102 @@
+package com.jellypudding.blockReports.benchmark;
+
+import com.jellypudding.blockReports.BlockReportsPolicy;
+import com.jellypudding.blockReports.listeners.ChatPacketListener;
+import com.jellypudding.blockReports.util.ChatConversionCache;
+import com.jellypudding.blockReports.util.InterceptorMetrics;
+import com.jellypudding.blockReports.util.SystemChatFrameCache;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.Holder;
+import net.minecraft.network.chat.ChatType;
+import net.minecraft.network.chat.ChatTypeDecoration;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.FilterMask;
+import net.minecraft.network.chat.LastSeenMessages;
+import net.minecraft.network.chat.MessageSignature;
+import net.minecraft.network.chat.RemoteChatSession;
+import net.minecraft.network.chat.SignedMessageBody;
+import net.minecraft.network.protocol.common.ClientboundKeepAlivePacket;
+import net.minecraft.network.protocol.game.ClientboundLoginPacket;
+import net.minecraft.network.protocol.game.ClientboundPlayerChatPacket;
+import net.minecraft.network.protocol.game.ServerboundChatSessionUpdatePacket;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.entity.player.ProfilePublicKey;
+
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Builds the packets the benchmarks and load harness push through the interceptor.
+ * Packets are built directly rather than decoded, so no running server is needed.
+ */
+public final class BenchmarkPackets {
+
+    static {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private static final Holder<ChatType> CHAT_TYPE = Holder.direct(new ChatType(
+        ChatTypeDecoration.withSender("chat.type.text"),
+        ChatTypeDecoration.withSender("chat.type.text.narrate")));
+    private static final Holder<ChatType> WHISPER_TYPE = Holder.direct(new ChatType(
+        ChatTypeDecoration.incomingDirectMessage("commands.message.display.incoming"),
+        ChatTypeDecoration.withSender("chat.type.text.narrate")));
+
+    private static final PublicKey PUBLIC_KEY = generatePublicKey();
+
+    private BenchmarkPackets() {
+    }
+
+    public static ChatPacketListener newInterceptor() {
+        Logger logger = Logger.getLogger("BlockReportsBenchmark");
+        BlockReportsPolicy policy = BlockReportsPolicy.DEFAULTS;
+        return new ChatPacketListener(logger, new InterceptorMetrics(), new ChatConversionCache(),
+            new SystemChatFrameCache(logger), policy);
+    }
+
+    public static ClientboundPlayerChatPacket publicChat(UUID sender, String senderName, String content, boolean signed) {
+        return chat(sender, content, signed, new ChatType.Bound(CHAT_TYPE, Component.literal(senderName), Optional.empty()));
+    }
+
+    public static ClientboundPlayerChatPacket whisper(UUID sender, String senderName, String targetName, String content) {
+        return chat(sender, content, true,
+            new ChatType.Bound(WHISPER_TYPE, Component.literal(senderName), Optional.of(Component.literal(targetName))));
+    }
+
+    public static ClientboundLoginPacket login(int playerId) {
+        // The interceptor copies the spawn info without reading it, so it can be left out
+        return new ClientboundLoginPacket(playerId, false, Set.of(), 100, 10, 10, false, true, false, null, false);
+    }
+
+    public static ServerboundChatSessionUpdatePacket sessionUpdate() {
+        ProfilePublicKey.Data key = new ProfilePublicKey.Data(Instant.now().plusSeconds(3600), PUBLIC_KEY, new byte[512]);
+        return new ServerboundChatSessionUpdatePacket(new RemoteChatSession.Data(UUID.randomUUID(), key));
+    }
+
+    public static ClientboundKeepAlivePacket keepAlive(long id) {
+        return new ClientboundKeepAlivePacket(id);
+    }
+
+    private static ClientboundPlayerChatPacket chat(UUID sender, String content, boolean signed, ChatType.Bound chatType) {
+        MessageSignature signature = signed ? new MessageSignature(new byte[MessageSignature.BYTES]) : null;
+        SignedMessageBody.Packed body = new SignedMessageBody.Packed(content, Instant.now(), 0L, LastSeenMessages.Packed.EMPTY);
+        return new ClientboundPlayerChatPacket(0, sender, 0, signature, body, null, FilterMask.PASS_THROUGH, chatType);
+    }
+
+    private static PublicKey generatePublicKey() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(1024);
+            return generator.generateKeyPair().getPublic();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.jellypudding.blockReports.benchmark;
+
+import com.jellypudding.blockReports.listeners.ChatPacketListener;
+import com.jellypudding.blockReports.util.PacketCapture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.core.registries.BuiltInRegistries;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replays a capture recorded with {@code /blockreports capture} through the interceptor in
+ * embedded channels, one per captured connection, as fast as it can. The first pass reports
+ * what each captured packet type was rewritten to; the remaining passes are timed. Run with
+ * {@code ./gradlew replayCapture -Pcapture=<file> -Piterations=10}.
+ */
+public final class CaptureReplay {
+
+    private final List<PacketCapture.Record> records;
+    private final ChatPacketListener interceptor = BenchmarkPackets.newInterceptor();
+    private final Map<Integer, EmbeddedChannel> channels = new HashMap<>();
+    private final Map<String, Integer> outcomes = new TreeMap<>();
+
+    private CaptureReplay(List<PacketCapture.Record> records) {
+        this.records = records;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args[0].isEmpty()) {
+            System.err.println("Usage: CaptureReplay <capture file> [iterations]");
+            System.exit(1);
+        }
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        // Creating the interceptor bootstraps the game, which decoding needs
+        BenchmarkPackets.newInterceptor();
+        List<PacketCapture.Record> records = PacketCapture.read(Path.of(args[0]),
+            RegistryAccess.fromRegistryOfRegistries(BuiltInRegistries.REGISTRY));
+        System.out.println("Loaded " + records.size() + " packets from " + args[0]);
+
+        new CaptureReplay(records).run(iterations);
+    }
+
+    private void run(int iterations) {
+        replay(true);
+        outcomes.forEach((outcome, count) -> System.out.printf("%-60s %d%n", outcome, count));
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            replay(false);
+        }
+        long elapsedNanos = System.nanoTime() - startTime;
+
+        long packets = (long) records.size() * iterations;
+        System.out.printf("Replayed packets:    %d%n", packets);
+        System.out.printf("Packets per second:  %.0f%n", packets / (elapsedNanos / 1e9));
+        System.out.printf("Mean per packet:     %.0f ns%n", (double) elapsedNanos / Math.max(1, packets));
+
+        channels.values().forEach(EmbeddedChannel::finishAndReleaseAll);
+    }
+
+    private void replay(boolean recordOutcomes) {
+        for (PacketCapture.Record record : records) {
+            EmbeddedChannel channel = channels.computeIfAbsent(record.channel(), id -> new EmbeddedChannel(interceptor));
+
+            Object result;
+            if (record.type().isClientbound()) {
+                channel.writeOutbound(record.packet());
+                result = channel.readOutbound();
+            } else {
+                channel.writeInbound(record.packet());
+                result = channel.readInbound();
+            }
+
+            if (recordOutcomes) {
+                String outcome = record.type() + " -> " + (result == null ? "blocked" : result.getClass().getSimpleName());
+                outcomes.merge(outcome, 1, Integer::sum);
+            }
+            ReferenceCountUtil.release(result);
+        }
+    }
+}
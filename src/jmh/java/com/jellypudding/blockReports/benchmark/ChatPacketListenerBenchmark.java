@@ -0,0 +1,110 @@
+package com.jellypudding.blockReports.benchmark;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.minecraft.network.protocol.common.ClientboundKeepAlivePacket;
+import net.minecraft.network.protocol.game.ClientboundLoginPacket;
+import net.minecraft.network.protocol.game.ClientboundPlayerChatPacket;
+import net.minecraft.network.protocol.game.ServerboundChatSessionUpdatePacket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the interceptor's write and channelRead through an embedded channel. Run with
+ * {@code ./gradlew jmh}, which adds {@code -prof gc} so allocation per operation is reported.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatPacketListenerBenchmark {
+
+    // More distinct messages than the conversion cache holds, so every write converts
+    private static final int UNIQUE_MESSAGES = 4096;
+
+    private EmbeddedChannel channel;
+    private ClientboundPlayerChatPacket broadcastChat;
+    private ClientboundPlayerChatPacket[] uniqueChats;
+    private ClientboundLoginPacket login;
+    private ClientboundKeepAlivePacket keepAlive;
+    private ServerboundChatSessionUpdatePacket sessionUpdate;
+    private int next;
+
+    @Setup
+    public void setup() {
+        channel = new EmbeddedChannel(BenchmarkPackets.newInterceptor());
+
+        UUID sender = UUID.randomUUID();
+        broadcastChat = BenchmarkPackets.publicChat(sender, "Alex", "hello everyone", true);
+        uniqueChats = new ClientboundPlayerChatPacket[UNIQUE_MESSAGES];
+        for (int i = 0; i < UNIQUE_MESSAGES; i++) {
+            uniqueChats[i] = BenchmarkPackets.publicChat(sender, "Alex", "message number " + i, true);
+        }
+        login = BenchmarkPackets.login(1);
+        keepAlive = BenchmarkPackets.keepAlive(42L);
+        sessionUpdate = BenchmarkPackets.sessionUpdate();
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    /**
+     * One receiver of a broadcast whose conversion has already been cached.
+     */
+    @Benchmark
+    public Object writeBroadcastChat() {
+        channel.writeOutbound(broadcastChat);
+        return channel.readOutbound();
+    }
+
+    /**
+     * A message seen for the first time, so it is unpacked, decorated and converted.
+     */
+    @Benchmark
+    public Object writeUniqueChat() {
+        channel.writeOutbound(uniqueChats[next++ & (UNIQUE_MESSAGES - 1)]);
+        return channel.readOutbound();
+    }
+
+    @Benchmark
+    public Object writeLogin() {
+        channel.writeOutbound(login);
+        return channel.readOutbound();
+    }
+
+    /**
+     * The common case: a packet the interceptor doesn't touch.
+     */
+    @Benchmark
+    public Object writePassThrough() {
+        channel.writeOutbound(keepAlive);
+        return channel.readOutbound();
+    }
+
+    @Benchmark
+    public Object readSessionUpdate() {
+        channel.writeInbound(sessionUpdate);
+        return channel.readInbound();
+    }
+
+    @Benchmark
+    public Object readPassThrough() {
+        channel.writeInbound(keepAlive);
+        return channel.readInbound();
+    }
+}
@@ -0,0 +1,88 @@
+package com.jellypudding.blockReports.benchmark;
+
+import com.jellypudding.blockReports.util.ConnectionHelper;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.minecraft.network.Connection;
+import net.minecraft.network.protocol.PacketFlow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the indexed connection lookup against the linear scan it replaced
+ * as the number of open connections grows, with every connection behind one of a
+ * few shared IPs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConnectionHelperBenchmark {
+
+    private static final int SHARED_IP_COUNT = 4;
+
+    @Param({"100", "1000", "10000"})
+    public int connectionCount;
+
+    private final List<Connection> connections = new ArrayList<>();
+    private final List<EmbeddedChannel> channels = new ArrayList<>();
+    private SocketAddress[] addresses;
+    private int next;
+
+    @Setup
+    public void setup() {
+        addresses = new SocketAddress[connectionCount];
+        for (int i = 0; i < connectionCount; i++) {
+            // Players share a few IPs and only differ by port, as they would behind a proxy or NAT
+            SocketAddress address = new InetSocketAddress("10.0.0." + (i % SHARED_IP_COUNT), 1024 + i / SHARED_IP_COUNT);
+            EmbeddedChannel channel = new EmbeddedChannel();
+            Connection connection = new Connection(PacketFlow.SERVERBOUND);
+            connection.address = address;
+            ConnectionHelper.track(channel, connection);
+
+            addresses[i] = address;
+            connections.add(connection);
+            channels.add(channel);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        channels.forEach(EmbeddedChannel::close);
+        ConnectionHelper.clearIndex();
+    }
+
+    @Benchmark
+    public Channel indexedLookup() {
+        return ConnectionHelper.findChannelByAddress(addresses[next++ % connectionCount]);
+    }
+
+    @Benchmark
+    public Connection linearScan() {
+        SocketAddress address = addresses[next++ % connectionCount];
+        for (Connection connection : connections) {
+            if (address.equals(connection.getRemoteAddress())) {
+                return connection;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,145 @@
+package com.jellypudding.blockReports.benchmark;
+
+import com.jellypudding.blockReports.listeners.ChatPacketListener;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.minecraft.network.protocol.game.ClientboundPlayerChatPacket;
+import net.minecraft.network.protocol.game.ServerboundChatSessionUpdatePacket;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * In-process load test for the interceptor. Opens thousands of embedded channels sharing
+ * one interceptor, replays a mix of public chat broadcasts, whispers and join-time session
+ * updates, and reports throughput, p99 added latency and bytes allocated per delivered
+ * message. Run with {@code ./gradlew loadTest -Pchannels=2000 -Pbroadcasts=2000}.
+ */
+public final class LoadHarness {
+
+    private static final double WHISPER_RATIO = 0.1;
+    private static final double JOIN_RATIO = 0.02;
+
+    private final int channelCount;
+    private final int broadcastCount;
+    private final Random random = new Random(1234);
+    private final List<EmbeddedChannel> channels = new ArrayList<>();
+    private final UUID[] playerIds;
+    private final String[] playerNames;
+
+    private final com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private long[] latencies = new long[1 << 16];
+    private int latencyCount;
+    private long delivered;
+    private long deliveryNanos;
+    private long allocatedBytes;
+
+    private LoadHarness(int channelCount, int broadcastCount) {
+        this.channelCount = channelCount;
+        this.broadcastCount = broadcastCount;
+        this.playerIds = new UUID[channelCount];
+        this.playerNames = new String[channelCount];
+    }
+
+    public static void main(String[] args) {
+        int channelCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int broadcastCount = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        new LoadHarness(channelCount, broadcastCount).run();
+    }
+
+    private void run() {
+        ChatPacketListener interceptor = BenchmarkPackets.newInterceptor();
+        for (int i = 0; i < channelCount; i++) {
+            EmbeddedChannel channel = new EmbeddedChannel();
+            channel.pipeline().addLast(ChatPacketListener.HANDLER_NAME, interceptor);
+            channels.add(channel);
+            playerIds[i] = UUID.randomUUID();
+            playerNames[i] = "Player" + i;
+        }
+
+        System.out.println("Warming up with " + channelCount + " channels...");
+        replay(Math.max(1, broadcastCount / 4));
+        latencyCount = 0;
+        delivered = 0;
+        deliveryNanos = 0;
+        allocatedBytes = 0;
+
+        // Throughput is derived from the time spent in the pipeline only, so building the
+        // packets and picking senders doesn't count against the interceptor.
+        System.out.println("Replaying " + broadcastCount + " chat events...");
+        replay(broadcastCount);
+
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        System.out.printf("Delivered messages:       %d%n", delivered);
+        System.out.printf("Messages per second:      %.0f%n", delivered / (deliveryNanos / 1e9));
+        System.out.printf("p50 added latency:        %d ns%n", percentile(sorted, 0.5));
+        System.out.printf("p99 added latency:        %d ns%n", percentile(sorted, 0.99));
+        System.out.printf("Bytes allocated/message:  %.1f%n", (double) allocatedBytes / Math.max(1, delivered));
+
+        channels.forEach(EmbeddedChannel::finishAndReleaseAll);
+    }
+
+    private void replay(int events) {
+        for (int event = 0; event < events; event++) {
+            int sender = random.nextInt(channelCount);
+            double roll = random.nextDouble();
+
+            if (roll < JOIN_RATIO) {
+                // A player rejoining sends a fresh chat session
+                ServerboundChatSessionUpdatePacket sessionUpdate = BenchmarkPackets.sessionUpdate();
+                EmbeddedChannel channel = channels.get(sender);
+                long allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+                long startTime = System.nanoTime();
+                channel.writeInbound(sessionUpdate);
+                long latency = System.nanoTime() - startTime;
+                channel.readInbound();
+                allocatedBytes += threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+                recordLatency(latency);
+                delivered++;
+            } else if (roll < JOIN_RATIO + WHISPER_RATIO) {
+                int target = random.nextInt(channelCount);
+                deliver(channels.get(target), BenchmarkPackets.whisper(playerIds[sender], playerNames[sender],
+                    playerNames[target], "psst " + event));
+            } else {
+                // The server builds one player chat packet per receiver for a broadcast
+                String content = "message " + event;
+                for (EmbeddedChannel channel : channels) {
+                    deliver(channel, BenchmarkPackets.publicChat(playerIds[sender], playerNames[sender], content, true));
+                }
+            }
+        }
+    }
+
+    private void deliver(EmbeddedChannel channel, ClientboundPlayerChatPacket packet) {
+        // Only the pipeline's work is counted, not building the packet the server would have sent anyway
+        long allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+        long startTime = System.nanoTime();
+        channel.writeOutbound(packet);
+        long latency = System.nanoTime() - startTime;
+        channel.readOutbound();
+        allocatedBytes += threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        recordLatency(latency);
+        delivered++;
+    }
+
+    private void recordLatency(long nanos) {
+        if (latencyCount == latencies.length) {
+            latencies = Arrays.copyOf(latencies, latencies.length * 2);
+        }
+        latencies[latencyCount++] = nanos;
+        deliveryNanos += nanos;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percentile) - 1)];
+    }
+}
@@ -2,23 +2,58 @@ package com.jellypudding.blockReports;
 
 import com.jellypudding.blockReports.commands.BlockReportsCommand;
 import com.jellypudding.blockReports.listeners.ChatPacketListener;
+import com.jellypudding.blockReports.listeners.ExemptionListener;
 import com.jellypudding.blockReports.listeners.KickListener;
+import com.jellypudding.blockReports.listeners.SourceChatListener;
+import com.jellypudding.blockReports.util.ChatConversionCache;
+import com.jellypudding.blockReports.util.ConnectionHelper;
+import com.jellypudding.blockReports.util.DebugEventLog;
+import com.jellypudding.blockReports.util.InterceptorMetrics;
+import com.jellypudding.blockReports.util.PacketCapture;
+import com.jellypudding.blockReports.util.SignedChatStateTrimmer;
+import com.jellypudding.blockReports.util.SystemChatFrameCache;
+import io.netty.channel.Channel;
+import net.minecraft.network.Connection;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.dedicated.DedicatedServer;
 import net.minecraft.server.dedicated.DedicatedServerProperties;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import io.papermc.paper.connection.PlayerLoginConnection;
 import io.papermc.paper.event.connection.PlayerConnectionValidateLoginEvent;
-import org.bukkit.event.player.PlayerQuitEvent;
+import io.papermc.paper.network.ChannelInitializeListenerHolder;
+import net.kyori.adventure.key.Key;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
 
 public final class BlockReports extends JavaPlugin implements Listener {
 
     private ChatPacketListener packetListener;
-    private FileConfiguration config;
-    private boolean enableLogging;
+    private ExemptionListener exemptionListener;
+    private final ChatConversionCache conversionCache = new ChatConversionCache();
+    private SystemChatFrameCache frameCache;
+    private volatile DebugEventLog debugLog;
+    private final InterceptorMetrics metrics = new InterceptorMetrics();
+    private BukkitTask metricsExportTask;
+    private PacketCapture capture;
+    // Read from Netty event loops, so it is replaced as a whole rather than mutated.
+    private volatile BlockReportsPolicy policy = BlockReportsPolicy.DEFAULTS;
+    private boolean bootstrapInjection;
+
+    private static final Key CHANNEL_LISTENER_KEY = Key.key("blockreports", "packet_interceptor");
+    private static final DateTimeFormatter CAPTURE_FILE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
 
     @Override
     public void onEnable() {
@@ -26,18 +61,52 @@ public final class BlockReports extends JavaPlugin implements Listener {
         saveDefaultConfig();
         loadConfig();
 
+        // Check every reflective target and rewrite once per server build rather than on every start.
+        if (!runCompatibilityProbe()) {
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+
         // Enforce the enforce-secure-profile setting in server.properties.
         enforceServerProperties();
 
+        // Start the debug event sink before anything can record to it.
+        startDebugLog();
+
         // Initialise packet listener.
-        packetListener = new ChatPacketListener(this);
+        frameCache = new SystemChatFrameCache(getLogger());
+        packetListener = new ChatPacketListener(getLogger(), metrics, conversionCache, frameCache, policy);
+        packetListener.setDebugLog(debugLog);
+        packetListener.setExemptionResolver(ExemptionListener::compute);
         
-        // Inject for currently online players (if any).
-        packetListener.inject();
+        if (isBootstrapInjection()) {
+            // Every new connection gets the handler from the server's channel initialiser,
+            // so only connections that already exist need injecting here.
+            ChannelInitializeListenerHolder.addListener(CHANNEL_LISTENER_KEY, packetListener::injectNewChannel);
+            packetListener.injectExistingConnections();
+        } else {
+            // Only index new connections, so a login can still be found by address if its
+            // connection can't be reached directly. The handler is added at login.
+            ChannelInitializeListenerHolder.addListener(CHANNEL_LISTENER_KEY, ConnectionHelper::trackNewChannel);
+            // Inject for currently online players (if any).
+            packetListener.inject();
+        }
+
+        // Compile the packet paths before players join, off the main thread.
+        getServer().getScheduler().runTaskAsynchronously(this, () -> CompatibilityProbe.warmUp(getLogger()));
 
         // Register listeners.
         getServer().getPluginManager().registerEvents(this, this);
         getServer().getPluginManager().registerEvents(new KickListener(this), this);
+        getServer().getPluginManager().registerEvents(new SourceChatListener(this), this);
+        exemptionListener = new ExemptionListener(this);
+        getServer().getPluginManager().registerEvents(exemptionListener, this);
+        // Players already online when the plugin was enabled or reloaded.
+        exemptionListener.refreshAll();
+        trimSignedChatState();
+
+        // Write metrics for scraping if configured.
+        scheduleMetricsExport();
 
         // Register command.
         getCommand("blockreports").setExecutor(new BlockReportsCommand(this));
@@ -48,31 +117,137 @@ public final class BlockReports extends JavaPlugin implements Listener {
                          ", Hide warnings=" + isHideSecureChatWarning() + 
                          ", Neutralise sessions=" + isNeutraliseChatSessions() +
                          ", Prevent kicks=" + isPreventChatKicks() +
+                         ", Injection=" + (isBootstrapInjection() ? "bootstrap" : "login") +
+                         ", Chat mode=" + (policy.sourceSideChat() ? "source" : "packet") +
                          ", Debug=" + isLoggingEnabled());
     }
 
     @Override
     public void onDisable() {
+        if (ChannelInitializeListenerHolder.hasListener(CHANNEL_LISTENER_KEY)) {
+            ChannelInitializeListenerHolder.removeListener(CHANNEL_LISTENER_KEY);
+        }
         if (packetListener != null) {
             packetListener.uninject();
         }
+        stopCapture();
+        ConnectionHelper.clearIndex();
+        if (frameCache != null) {
+            // Release the encoded frames still held by the cache
+            frameCache.invalidateAll();
+        }
+        if (debugLog != null) {
+            debugLog.close();
+            debugLog = null;
+        }
         
         getLogger().info("BlockReports has been disabled.");
     }
 
     @EventHandler(priority = EventPriority.LOWEST)
     public void onPlayerLogin(PlayerConnectionValidateLoginEvent event) {
-        if (packetListener != null) {
-            // Inject using IP address before login completes to catch the login packet
-            // that is needed to pretend the enforce-secure-profile setting is true.
-            packetListener.injectPlayer(null, event.getConnection().getClientAddress().getAddress());
+        if (packetListener == null) {
+            return;
+        }
+
+        // The connection is known here, so re-key it under the address a proxy may have
+        // forwarded since the channel was opened and bind the player to it, instead of
+        // leaving later lookups to miss.
+        Channel channel;
+        Connection connection = ConnectionHelper.findLoginConnection(event.getConnection());
+        if (connection != null && connection.channel != null) {
+            ConnectionHelper.track(connection);
+            channel = connection.channel;
+        } else {
+            // Only when the compatibility probe warned that the login connection can't be read.
+            // The channel was indexed when it opened, but a proxy may have forwarded another
+            // address since, so fall back to one re-index rather than losing the login.
+            channel = ConnectionHelper.findChannelByAddress(event.getConnection().getClientAddress());
+            if (channel == null) {
+                ConnectionHelper.refreshIndex();
+                channel = ConnectionHelper.findChannelByAddress(event.getConnection().getClientAddress());
+            }
+        }
+        if (channel == null) {
+            getLogger().warning("No connection found for login from " + event.getConnection().getClientAddress());
+            return;
+        }
+
+        UUID playerId = null;
+        String playerName = event.getConnection().getClientAddress().toString();
+        if (event.getConnection() instanceof PlayerLoginConnection loginConnection
+                && loginConnection.getAuthenticatedProfile() != null) {
+            playerId = loginConnection.getAuthenticatedProfile().getId();
+            playerName = loginConnection.getAuthenticatedProfile().getName();
+        }
+        if (playerId != null) {
+            ConnectionHelper.bindPlayer(playerId, channel);
+        }
+
+        // In bootstrap mode the handler was added when the channel was initialised. Otherwise
+        // inject before login completes to catch the login packet that is needed to pretend the
+        // enforce-secure-profile setting is true.
+        if (!isBootstrapInjection()) {
+            packetListener.injectChannel(channel, playerName);
         }
     }
 
-    @EventHandler(priority = EventPriority.LOWEST)
-    public void onPlayerQuit(PlayerQuitEvent event) {
-        if (packetListener != null) {
-            packetListener.uninjectPlayer(event.getPlayer());
+    private boolean runCompatibilityProbe() {
+        CompatibilityProbe probe = new CompatibilityProbe(getLogger(),
+            getDataFolder().toPath().resolve("compatibility.properties"),
+            getServer().getVersion(), getPluginMeta().getVersion());
+        if (probe.isVerified()) {
+            if (isLoggingEnabled()) {
+                getLogger().info("Compatibility probe skipped, this server build was already verified");
+            }
+            return true;
+        }
+
+        CompatibilityProbe.Result result = probe.run();
+        for (String warning : result.warnings()) {
+            getLogger().warning("Compatibility: " + warning);
+        }
+        if (!result.isCompatible()) {
+            for (String failure : result.failures()) {
+                getLogger().severe("Compatibility: " + failure);
+            }
+            getLogger().severe("This server build is not supported by BlockReports " + getPluginMeta().getVersion());
+            return false;
+        }
+
+        probe.save();
+        getLogger().info("Compatibility probe passed for " + getServer().getVersion());
+        return true;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        if (policy.trimSignedChatState()) {
+            trimSignedChatState(event.getPlayer());
+        }
+    }
+
+    private void trimSignedChatState() {
+        if (!policy.trimSignedChatState()) {
+            return;
+        }
+        if (!SignedChatStateTrimmer.isAvailable()) {
+            getLogger().warning("trim-signed-chat-state is not supported on this server build");
+            return;
+        }
+        for (Player player : getServer().getOnlinePlayers()) {
+            trimSignedChatState(player);
+        }
+    }
+
+    private void trimSignedChatState(Player player) {
+        try {
+            long bytesFreed = SignedChatStateTrimmer.trim(player);
+            if (bytesFreed > 0) {
+                metrics.recordSignedStateTrimmed(bytesFreed);
+            }
+        } catch (IllegalStateException e) {
+            getLogger().warning(e.getMessage());
         }
     }
 
@@ -104,40 +279,152 @@ public final class BlockReports extends JavaPlugin implements Listener {
     public void reloadConfigManager() {
         reloadConfig();
         loadConfig();
+        conversionCache.invalidateAll();
+        if (frameCache != null) {
+            frameCache.invalidateAll();
+        }
+        startDebugLog();
+        scheduleMetricsExport();
+        if (exemptionListener != null) {
+            // Picks up changed exemption lists and any permissions granted since players joined
+            exemptionListener.refreshAll();
+        }
+        trimSignedChatState();
+
+        // loadConfig handed the shared packet listener the new policy, which it reads on its
+        // next packet, so the pipelines it is installed in don't need rebuilding.
+
+        getLogger().info("Configuration reloaded successfully!");
+    }
+
+    /**
+     * Starts recording intercepted packets to a new file under captures, and returns it.
+     */
+    public Path startCapture() throws IOException {
+        if (capture != null) {
+            throw new IllegalStateException("A capture is already running: " + capture.getFile().getFileName());
+        }
+
+        Path file = getDataFolder().toPath().resolve("captures")
+            .resolve("capture-" + CAPTURE_FILE_FORMAT.format(LocalDateTime.now()) + ".brcap");
+        capture = new PacketCapture(getLogger(), file, MinecraftServer.getServer().registryAccess());
+        packetListener.setCapture(capture);
+        return file;
+    }
+
+    /**
+     * Stops the running capture and returns it, or null if none was running.
+     */
+    public PacketCapture stopCapture() {
+        PacketCapture stopped = capture;
+        if (stopped == null) {
+            return null;
+        }
 
-        // Reinject packet listener with new settings.
         if (packetListener != null) {
-            packetListener.uninject();
-            packetListener.inject();
+            packetListener.setCapture(null);
         }
+        capture = null;
+        stopped.close();
+        return stopped;
+    }
 
-        getLogger().info("Configuration reloaded successfully!");
+    private void startDebugLog() {
+        DebugEventLog previous = debugLog;
+        if (isLoggingEnabled()) {
+            Path logDirectory = getConfig().getBoolean("debug-log-file", false)
+                ? getDataFolder().toPath().resolve("logs") : null;
+            debugLog = new DebugEventLog(getLogger(), logDirectory);
+        } else {
+            // No drain thread while logging is off
+            debugLog = null;
+        }
+        if (packetListener != null) {
+            packetListener.setDebugLog(debugLog);
+        }
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    private void scheduleMetricsExport() {
+        if (metricsExportTask != null) {
+            metricsExportTask.cancel();
+            metricsExportTask = null;
+        }
+
+        long intervalSeconds = getConfig().getLong("metrics-export-interval-seconds", 0);
+        if (intervalSeconds <= 0) {
+            return;
+        }
+
+        Path metricsFile = getDataFolder().toPath().resolve("metrics.prom");
+        long intervalTicks = intervalSeconds * 20;
+        metricsExportTask = getServer().getScheduler().runTaskTimerAsynchronously(this,
+            () -> exportMetrics(metricsFile), intervalTicks, intervalTicks);
+    }
+
+    private void exportMetrics(Path metricsFile) {
+        try {
+            // Write to a temporary file and move it into place so scrapers never see a partial file
+            Path temporaryFile = metricsFile.resolveSibling(metricsFile.getFileName() + ".tmp");
+            Files.writeString(temporaryFile, metrics.toPrometheus());
+            Files.move(temporaryFile, metricsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            getLogger().warning("Failed to export metrics: " + e.getMessage());
+        }
     }
 
     private void loadConfig() {
-        config = getConfig();
-        enableLogging = config.getBoolean("enable-logging", false);
+        FileConfiguration config = getConfig();
+        policy = BlockReportsPolicy.fromConfig(config);
+        if (packetListener != null) {
+            packetListener.setPolicy(policy);
+        }
+        // Injection mode is only read on enable, as switching it needs the pipelines rebuilt.
+        if (packetListener == null) {
+            bootstrapInjection = !"login".equalsIgnoreCase(config.getString("injection-mode", "bootstrap"));
+        }
     }
 
     // Configuration getters
+    public BlockReportsPolicy getPolicy() {
+        return policy;
+    }
+
     public boolean isStripServerSignatures() {
-        return config.getBoolean("strip-server-signatures", true);
+        return policy.stripServerSignatures();
     }
 
     public boolean isHideSecureChatWarning() {
-        return config.getBoolean("hide-secure-chat-warning", true);
+        return policy.hideSecureChatWarning();
     }
 
     public boolean isNeutraliseChatSessions() {
-        return config.getBoolean("neutralise-chat-sessions", true);
+        return policy.neutraliseChatSessions();
     }
 
     public boolean isPreventChatKicks() {
-        return config.getBoolean("prevent-chat-kicks", true);
+        return policy.preventChatKicks();
+    }
+
+    public boolean isBootstrapInjection() {
+        return bootstrapInjection;
     }
 
     public boolean isLoggingEnabled() {
-        return enableLogging;
+        return policy.enableLogging();
+    }
+
+    public InterceptorMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * The debug event log, or null while logging is disabled.
+     */
+    public DebugEventLog getDebugLog() {
+        return debugLog;
     }
 
     public ChatPacketListener getPacketListener() {
@@ -0,0 +1,47 @@
+package com.jellypudding.blockReports;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable snapshot of the settings read on the Netty event loops. A new snapshot is
+ * published on every (re)load so packet handlers never touch the live configuration.
+ */
+public record BlockReportsPolicy(
+    boolean stripServerSignatures,
+    boolean hideSecureChatWarning,
+    boolean neutraliseChatSessions,
+    boolean preventChatKicks,
+    boolean enableLogging,
+    boolean preEncodeBroadcasts,
+    boolean sourceSideChat,
+    boolean trimSignedChatState,
+    int slowClientChatLimit,
+    Set<String> exemptWorlds,
+    Set<String> exemptClientBrands
+) {
+
+    public static final BlockReportsPolicy DEFAULTS = new BlockReportsPolicy(true, true, true, true, false, false, false, false, 0,
+        Set.of(), Set.of());
+
+    public static BlockReportsPolicy fromConfig(FileConfiguration config) {
+        return new BlockReportsPolicy(
+            config.getBoolean("strip-server-signatures", DEFAULTS.stripServerSignatures()),
+            config.getBoolean("hide-secure-chat-warning", DEFAULTS.hideSecureChatWarning()),
+            config.getBoolean("neutralise-chat-sessions", DEFAULTS.neutraliseChatSessions()),
+            config.getBoolean("prevent-chat-kicks", DEFAULTS.preventChatKicks()),
+            config.getBoolean("enable-logging", DEFAULTS.enableLogging()),
+            config.getBoolean("pre-encode-broadcasts", DEFAULTS.preEncodeBroadcasts()),
+            "source".equalsIgnoreCase(config.getString("chat-mode", "packet")),
+            config.getBoolean("trim-signed-chat-state", DEFAULTS.trimSignedChatState()),
+            Math.max(0, config.getInt("slow-client-chat-limit", DEFAULTS.slowClientChatLimit())),
+            Set.copyOf(config.getStringList("exemptions.worlds")),
+            config.getStringList("exemptions.client-brands").stream()
+                .map(brand -> brand.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet())
+        );
+    }
+}
@@ -0,0 +1,233 @@
+package com.jellypudding.blockReports;
+
+import com.jellypudding.blockReports.listeners.ChatPacketListener;
+import com.jellypudding.blockReports.listeners.ChatSessionDecodeFilter;
+import com.jellypudding.blockReports.listeners.KickListener;
+import com.jellypudding.blockReports.util.ChatConversionCache;
+import com.jellypudding.blockReports.util.ConnectionHelper;
+import com.jellypudding.blockReports.util.InterceptorMetrics;
+import com.jellypudding.blockReports.util.PendingSignedChat;
+import com.jellypudding.blockReports.util.SignedChatStateTrimmer;
+import com.jellypudding.blockReports.util.SystemChatFrameCache;
+import io.netty.channel.embedded.EmbeddedChannel;
+import net.minecraft.network.chat.ChatType;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.FilterMask;
+import net.minecraft.network.chat.LastSeenMessages;
+import net.minecraft.network.chat.MessageSignature;
+import net.minecraft.network.chat.SignedMessageBody;
+import net.minecraft.network.protocol.game.ClientboundLoginPacket;
+import net.minecraft.network.protocol.game.ClientboundPlayerChatPacket;
+import net.minecraft.network.protocol.game.ClientboundSystemChatPacket;
+import net.minecraft.network.protocol.game.ServerboundChatAckPacket;
+import net.minecraft.network.protocol.game.ServerboundChatPacket;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.dedicated.DedicatedServerProperties;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Checks every reflective target and server hook the plugin relies on, then pushes synthetic
+ * packets through a private interceptor to confirm each rewrite produces what the client
+ * expects. A passing result is cached against the server and plugin versions, so the checks
+ * only run again after one of them changes.
+ */
+public final class CompatibilityProbe {
+
+    private static final int WARM_UP_ITERATIONS = 20_000;
+    private static final int WARM_UP_DISTINCT_MESSAGES = 256;
+
+    private final Logger logger;
+    private final Path cacheFile;
+    private final String serverVersion;
+    private final String pluginVersion;
+
+    public record Result(List<String> failures, List<String> warnings) {
+
+        public boolean isCompatible() {
+            return failures.isEmpty();
+        }
+    }
+
+    public CompatibilityProbe(Logger logger, Path cacheFile, String serverVersion, String pluginVersion) {
+        this.logger = logger;
+        this.cacheFile = cacheFile;
+        this.serverVersion = serverVersion;
+        this.pluginVersion = pluginVersion;
+    }
+
+    /**
+     * True if a previous probe passed on this exact server build and plugin version.
+     */
+    public boolean isVerified() {
+        if (!Files.isRegularFile(cacheFile)) {
+            return false;
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(cacheFile)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            return false;
+        }
+        return serverVersion.equals(properties.getProperty("server-version"))
+            && pluginVersion.equals(properties.getProperty("plugin-version"));
+    }
+
+    public Result run() {
+        List<String> failures = new ArrayList<>();
+        List<String> warnings = new ArrayList<>();
+
+        if (!ConnectionHelper.isLoginConnectionAvailable()) {
+            warnings.add("Paper's login connection has no readable Connection field, logins are matched by address instead");
+        }
+        if (!hasField(DedicatedServerProperties.class, "enforceSecureProfile")) {
+            warnings.add("DedicatedServerProperties.enforceSecureProfile is missing, set enforce-secure-profile=false yourself");
+        }
+        if (!hasClass("io.papermc.paper.network.ChannelInitializeListenerHolder")) {
+            // Both injection modes index new connections from the channel initialiser
+            failures.add("ChannelInitializeListenerHolder is missing");
+        }
+        if (!ChatSessionDecodeFilter.isAvailable()) {
+            warnings.add("chat session update packet id not found, sessions are neutralised after decoding instead");
+        }
+        if (!new SystemChatFrameCache(logger).isAvailable()) {
+            warnings.add("clientbound game codec could not be bound, pre-encode-broadcasts has no effect");
+        }
+        if (!SignedChatStateTrimmer.isAvailable()) {
+            warnings.add("message signature cache not found, trim-signed-chat-state has no effect");
+        }
+        if (!PendingSignedChat.isAvailable()) {
+            failures.add("ServerGamePacketListenerImpl has no LastSeenMessagesValidator field");
+        }
+        if (KickListener.getChatKickCauses().isEmpty()) {
+            warnings.add("no chat kick causes found, kicks are only matched by their reason text");
+        }
+
+        // The rewrites themselves can only be checked once the hooks they rely on resolved
+        if (failures.isEmpty()) {
+            try {
+                verifyRewrites(failures);
+            } catch (RuntimeException e) {
+                failures.add("synthetic packets: " + e);
+            }
+        }
+        return new Result(List.copyOf(failures), List.copyOf(warnings));
+    }
+
+    public void save() {
+        Properties properties = new Properties();
+        properties.setProperty("server-version", serverVersion);
+        properties.setProperty("plugin-version", pluginVersion);
+        properties.setProperty("verified-at", Instant.now().toString());
+
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            try (Writer writer = Files.newBufferedWriter(cacheFile)) {
+                properties.store(writer, "BlockReports compatibility probe, delete to probe again");
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to save compatibility probe result: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the interceptor's hot paths enough times for the JIT to compile them before the
+     * first players join. Uses its own interceptor, so live metrics and caches are untouched.
+     */
+    public static void warmUp(Logger logger) {
+        ChatPacketListener interceptor = newInterceptor(logger);
+        ChatType.Bound chatType = chatType();
+        UUID sender = UUID.randomUUID();
+
+        EmbeddedChannel channel = new EmbeddedChannel(interceptor);
+        try {
+            for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+                channel.writeOutbound(chat(sender, "warm-up " + (i % WARM_UP_DISTINCT_MESSAGES), chatType));
+                channel.writeInbound(inboundChat("warm-up " + i));
+                channel.releaseOutbound();
+                channel.releaseInbound();
+            }
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    private void verifyRewrites(List<String> failures) {
+        EmbeddedChannel channel = new EmbeddedChannel(newInterceptor(logger));
+        try {
+            channel.writeOutbound(new ClientboundLoginPacket(0, false, Set.of(), 1, 2, 2, false, true, false, null, false));
+            if (!(channel.readOutbound() instanceof ClientboundLoginPacket login) || !login.enforcesSecureChat()) {
+                failures.add("login packet was not spoofed");
+            }
+
+            channel.writeOutbound(chat(UUID.randomUUID(), "probe", chatType()));
+            if (!(channel.readOutbound() instanceof ClientboundSystemChatPacket)) {
+                failures.add("player chat was not converted to system chat");
+            }
+
+            channel.writeInbound(inboundChat("probe"));
+            if (!(channel.readInbound() instanceof ServerboundChatPacket chat) || chat.signature() != null
+                    || chat.lastSeenMessages().offset() != 0) {
+                failures.add("inbound chat was not normalised");
+            }
+
+            channel.writeInbound(new ServerboundChatAckPacket(1));
+            if (channel.readInbound() != null) {
+                failures.add("chat acknowledgement was not dropped");
+            }
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    private static ChatPacketListener newInterceptor(Logger logger) {
+        return new ChatPacketListener(logger, new InterceptorMetrics(), new ChatConversionCache(),
+            new SystemChatFrameCache(logger), BlockReportsPolicy.DEFAULTS);
+    }
+
+    private static ChatType.Bound chatType() {
+        return ChatType.bind(ChatType.CHAT, MinecraftServer.getServer().registryAccess(), Component.literal("BlockReports"));
+    }
+
+    private static ClientboundPlayerChatPacket chat(UUID sender, String content, ChatType.Bound chatType) {
+        SignedMessageBody.Packed body = new SignedMessageBody.Packed(content, Instant.now(), 0L, LastSeenMessages.Packed.EMPTY);
+        return new ClientboundPlayerChatPacket(0, sender, 0, new MessageSignature(new byte[MessageSignature.BYTES]),
+            body, null, FilterMask.PASS_THROUGH, chatType);
+    }
+
+    private static ServerboundChatPacket inboundChat(String message) {
+        return new ServerboundChatPacket(message, Instant.now(), 0L, new MessageSignature(new byte[MessageSignature.BYTES]),
+            new LastSeenMessages.Update(1, new BitSet(), (byte) 1));
+    }
+
+    private static boolean hasField(Class<?> owner, String name) {
+        try {
+            owner.getDeclaredField(name);
+            return true;
+        } catch (NoSuchFieldException e) {
+            return false;
+        }
+    }
+
+    private static boolean hasClass(String name) {
+        try {
+            Class.forName(name, false, CompatibilityProbe.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
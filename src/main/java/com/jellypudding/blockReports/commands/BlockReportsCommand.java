@@ -1,6 +1,7 @@
 package com.jellypudding.blockReports.commands;
 
 import com.jellypudding.blockReports.BlockReports;
+import com.jellypudding.blockReports.util.PacketCapture;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import org.bukkit.command.Command;
@@ -8,6 +9,8 @@ import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -30,7 +33,7 @@ public class BlockReportsCommand implements CommandExecutor, TabCompleter {
 
         if (args.length == 0) {
             Component message = Component.text("[BlockReports] ", NamedTextColor.GOLD)
-                .append(Component.text("Usage: /blockreports reload", NamedTextColor.WHITE));
+                .append(Component.text("Usage: /blockreports <reload|stats|capture>", NamedTextColor.WHITE));
             sender.sendMessage(message);
             return true;
         }
@@ -43,18 +46,67 @@ public class BlockReportsCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
+        if (args[0].equalsIgnoreCase("stats")) {
+            sender.sendMessage(Component.text("[BlockReports] ", NamedTextColor.GOLD)
+                .append(Component.text("Interceptor statistics:", NamedTextColor.WHITE)));
+            for (String line : plugin.getMetrics().describe()) {
+                sender.sendMessage(Component.text(" - " + line, NamedTextColor.GRAY));
+            }
+            return true;
+        }
+
+        if (args[0].equalsIgnoreCase("capture")) {
+            handleCapture(sender, args);
+            return true;
+        }
+
         Component message = Component.text("[BlockReports] ", NamedTextColor.RED)
-            .append(Component.text("Unknown command. Usage: /blockreports reload", NamedTextColor.WHITE));
+            .append(Component.text("Unknown command. Usage: /blockreports <reload|stats|capture>", NamedTextColor.WHITE));
         sender.sendMessage(message);
         return true;
     }
 
+    private void handleCapture(CommandSender sender, String[] args) {
+        if (args.length >= 2 && args[1].equalsIgnoreCase("start")) {
+            try {
+                Path file = plugin.startCapture();
+                sender.sendMessage(Component.text("[BlockReports] ", NamedTextColor.GREEN)
+                    .append(Component.text("Capturing chat packets to " + file.getFileName(), NamedTextColor.WHITE)));
+            } catch (IllegalStateException | IOException e) {
+                sender.sendMessage(Component.text("[BlockReports] ", NamedTextColor.RED)
+                    .append(Component.text("Failed to start capture: " + e.getMessage(), NamedTextColor.WHITE)));
+            }
+            return;
+        }
+
+        if (args.length >= 2 && args[1].equalsIgnoreCase("stop")) {
+            PacketCapture capture = plugin.stopCapture();
+            if (capture == null) {
+                sender.sendMessage(Component.text("[BlockReports] ", NamedTextColor.RED)
+                    .append(Component.text("No capture is running.", NamedTextColor.WHITE)));
+            } else {
+                sender.sendMessage(Component.text("[BlockReports] ", NamedTextColor.GREEN)
+                    .append(Component.text("Captured " + capture.getWrittenCount() + " packets to "
+                        + capture.getFile().getFileName() + " (" + capture.getDroppedCount() + " dropped).", NamedTextColor.WHITE)));
+            }
+            return;
+        }
+
+        sender.sendMessage(Component.text("[BlockReports] ", NamedTextColor.GOLD)
+            .append(Component.text("Usage: /blockreports capture <start|stop>", NamedTextColor.WHITE)));
+    }
+
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         List<String> completions = new ArrayList<>();
 
         if (args.length == 1) {
             completions.add("reload");
+            completions.add("stats");
+            completions.add("capture");
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("capture")) {
+            completions.add("start");
+            completions.add("stop");
         }
 
         return completions;
@@ -1,196 +1,588 @@
 package com.jellypudding.blockReports.listeners;
 
-import com.jellypudding.blockReports.BlockReports;
+import com.jellypudding.blockReports.BlockReportsPolicy;
+import com.jellypudding.blockReports.util.ChannelExemptions;
+import com.jellypudding.blockReports.util.ChatBacklog;
+import com.jellypudding.blockReports.util.ChatConversionCache;
 import com.jellypudding.blockReports.util.ConnectionHelper;
+import com.jellypudding.blockReports.util.DebugEventLog;
+import com.jellypudding.blockReports.util.DebugEventLog.Action;
+import com.jellypudding.blockReports.util.DebugEventLog.PacketType;
+import com.jellypudding.blockReports.util.InterceptorMetrics;
+import com.jellypudding.blockReports.util.PacketCapture;
+import com.jellypudding.blockReports.util.PendingSignedChat;
+import com.jellypudding.blockReports.util.SystemChatFrameCache;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
-import net.minecraft.network.chat.ChatType;
-import net.minecraft.network.chat.Component;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import net.minecraft.network.Connection;
 import net.minecraft.network.protocol.game.ClientboundLoginPacket;
 import net.minecraft.network.protocol.game.ClientboundPlayerChatPacket;
 import net.minecraft.network.protocol.game.ClientboundSystemChatPacket;
+import net.minecraft.network.protocol.game.ServerboundChatAckPacket;
+import net.minecraft.network.protocol.game.ServerboundChatCommandSignedPacket;
+import net.minecraft.network.protocol.game.ServerboundChatPacket;
 import net.minecraft.network.protocol.game.ServerboundChatSessionUpdatePacket;
+import net.minecraft.network.chat.LastSeenMessages;
+import net.minecraft.network.chat.LastSeenMessagesValidator;
+import net.minecraft.network.chat.MessageSignature;
 import net.minecraft.network.chat.RemoteChatSession;
+import net.minecraft.server.network.ServerGamePacketListenerImpl;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.ToIntBiFunction;
+import java.util.logging.Logger;
 
+/**
+ * A single stateless interceptor shared by every connection for the lifetime of the plugin.
+ * Behaviour comes from the current policy snapshot, so a reload never has to touch the
+ * pipelines it is installed in. It does not depend on the plugin instance, which lets the
+ * benchmarks drive it through an embedded channel.
+ */
+@ChannelHandler.Sharable
 public class ChatPacketListener extends ChannelDuplexHandler {
     
-    private final BlockReports plugin;
-    private static final String HANDLER_NAME = "blockreports_packet_interceptor";
+    public static final String HANDLER_NAME = "blockreports_packet_interceptor";
+
+    private static final AttributeKey<Instant> LAST_CHAT_TIMESTAMP = AttributeKey.valueOf("blockreports_last_chat_timestamp");
+    private static final AttributeKey<ChatBacklog> CHAT_BACKLOG = AttributeKey.valueOf("blockreports_chat_backlog");
+    private static final AttributeKey<PendingSignedChat> PENDING_SIGNED_CHAT = AttributeKey.valueOf("blockreports_pending_signed_chat");
+
+    // Matches how many unacknowledged messages the vanilla client lets build up before acknowledging
+    private static final int SYNTHETIC_ACK_THRESHOLD = 64;
+
+    private final Logger logger;
+    private final InterceptorMetrics metrics;
+    private final ChatConversionCache conversionCache;
+    private final SystemChatFrameCache frameCache;
+    private final ChatSessionDecodeFilter sessionFilter;
+    private final PacketRewriteTable outboundRewriters = new PacketRewriteTable();
+    private final PacketRewriteTable inboundRewriters = new PacketRewriteTable();
+
+    // Swapped in place by a reload and read once per packet
+    private volatile BlockReportsPolicy policy;
+    private volatile DebugEventLog debugLog;
+    private volatile PacketCapture capture;
+    private volatile ToIntBiFunction<Player, BlockReportsPolicy> exemptionResolver;
     
-    public ChatPacketListener(BlockReports plugin) {
-        this.plugin = plugin;
+    public ChatPacketListener(Logger logger, InterceptorMetrics metrics, ChatConversionCache conversionCache,
+                              SystemChatFrameCache frameCache, BlockReportsPolicy policy) {
+        this.logger = logger;
+        this.metrics = metrics;
+        this.conversionCache = conversionCache;
+        this.frameCache = frameCache;
+        this.policy = policy;
+        this.sessionFilter = new ChatSessionDecodeFilter(this::getPolicy, metrics);
+
+        outboundRewriters
+            .register(ClientboundLoginPacket.class, this::spoofLogin)
+            .register(ClientboundPlayerChatPacket.class, this::convertPlayerChat)
+            .register(ClientboundSystemChatPacket.class, this::orderBehindBacklog);
+        inboundRewriters
+            .register(ServerboundChatSessionUpdatePacket.class, this::neutraliseSession)
+            .register(ServerboundChatPacket.class, this::normaliseChat)
+            .register(ServerboundChatCommandSignedPacket.class, this::normaliseChatCommand)
+            .register(ServerboundChatAckPacket.class, this::normaliseChatAck);
+    }
+
+    public BlockReportsPolicy getPolicy() {
+        return policy;
+    }
+
+    public void setPolicy(BlockReportsPolicy policy) {
+        this.policy = policy;
+    }
+
+    public void setDebugLog(DebugEventLog debugLog) {
+        this.debugLog = debugLog;
+    }
+
+    public void setCapture(PacketCapture capture) {
+        this.capture = capture;
+    }
+
+    /**
+     * Works out a player's exemptions as their login packet is sent, which is before their
+     * client sends its chat session and before the join event.
+     */
+    public void setExemptionResolver(ToIntBiFunction<Player, BlockReportsPolicy> exemptionResolver) {
+        this.exemptionResolver = exemptionResolver;
     }
 
     public void inject() {
+        // Index every connection in one pass so each player lookup below is constant time
+        ConnectionHelper.refreshIndex();
+
         // Inject for all online players
         for (Player player : Bukkit.getOnlinePlayers()) {
             injectPlayer(player);
         }
         
-        if (plugin.isLoggingEnabled()) {
-            plugin.getLogger().info("Packet listener injected for " + Bukkit.getOnlinePlayers().size() + " players");
+        if (policy.enableLogging()) {
+            logger.info("Packet listener injected for " + Bukkit.getOnlinePlayers().size() + " players");
         }
     }
     
     public void injectPlayer(Player player) {
-        injectPlayer(player, player.getAddress().getAddress());
+        Channel channel = ConnectionHelper.findChannel(player);
+        if (channel == null) {
+            logger.warning("Failed to inject packet listener for player " +
+                player.getName() + ": no active connection found");
+            return;
+        }
+        injectChannel(channel, player.getName());
     }
-    
-    public void injectPlayer(Player player, java.net.InetAddress address) {
+
+    /**
+     * Called by the server's channel initialiser for every new connection, on that
+     * channel's event loop, before any packet has been read or written.
+     */
+    public void injectNewChannel(Channel channel) {
+        if (channel.pipeline().get("packet_handler") instanceof Connection connection) {
+            ConnectionHelper.track(channel, connection);
+            channel.pipeline().addBefore("packet_handler", HANDLER_NAME, this);
+        } else {
+            channel.pipeline().addLast(HANDLER_NAME, this);
+        }
+        injectSessionFilter(channel);
+    }
+
+    /**
+     * Fallback for bootstrap injection: covers connections that were already open,
+     * including ones still logging in, when the plugin was enabled.
+     */
+    public void injectExistingConnections() {
+        List<Connection> connections = ConnectionHelper.getAllServerConnections();
+        synchronized (connections) {
+            for (Connection connection : connections) {
+                Channel channel = connection.channel;
+                if (channel != null && channel.isActive()) {
+                    ConnectionHelper.track(connection);
+                    injectChannel(channel, String.valueOf(connection.getRemoteAddress()));
+                }
+            }
+        }
+    }
+
+    public void injectChannel(Channel channel, String playerName) {
         try {
-            var connection = ConnectionHelper.requireConnectionByAddress(address);
-            var channel = ConnectionHelper.getConnectionChannel(connection);
-            
-            // Remove existing handler if present on this specific channel only
-            if (channel.pipeline().get(HANDLER_NAME) != null) {
-                channel.pipeline().remove(HANDLER_NAME);
+            ChannelHandler existing = channel.pipeline().get(HANDLER_NAME);
+            if (existing == this) {
+                return;
             }
 
-            // Inject before packet_handler to catch all packets including login
-            if (channel.pipeline().get("packet_handler") != null) {
-                channel.pipeline().addBefore("packet_handler", HANDLER_NAME, new ChatPacketListener(plugin));
+            if (existing != null) {
+                // Left behind by a previous instance of the plugin, so swap it in place
+                channel.pipeline().replace(HANDLER_NAME, HANDLER_NAME, this);
+            } else if (channel.pipeline().get("packet_handler") != null) {
+                // Inject before packet_handler to catch all packets including login
+                channel.pipeline().addBefore("packet_handler", HANDLER_NAME, this);
             } else {
-                channel.pipeline().addLast(HANDLER_NAME, new ChatPacketListener(plugin));
+                channel.pipeline().addLast(HANDLER_NAME, this);
             }
+            injectSessionFilter(channel);
             
-            if (plugin.isLoggingEnabled()) {
-                String playerName = (player != null) ? player.getName() : address.getHostAddress();
-                plugin.getLogger().info("✓ Injected packet listener for player: " + playerName);
+            if (policy.enableLogging()) {
+                logger.info("✓ Injected packet listener for player: " + playerName);
             }
                 
         } catch (Exception e) {
-            String playerName = (player != null) ? player.getName() : address.getHostAddress();
-            plugin.getLogger().warning("Failed to inject packet listener for player " + 
+            logger.warning("Failed to inject packet listener for player " + 
                 playerName + ": " + e.getMessage());
         }
     }
     
-    public void uninject() {
-        // Remove from all online players
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            uninjectPlayer(player);
+    private void injectSessionFilter(Channel channel) {
+        // Directly in front of the decoder, after decryption and decompression, so it sees
+        // whole uncompressed frames. The decoder is replaced in place on protocol changes.
+        if (!ChatSessionDecodeFilter.isAvailable() || channel.pipeline().get("decoder") == null) {
+            return;
         }
-        
-        if (plugin.isLoggingEnabled()) {
-            plugin.getLogger().info("Packet listener removed from all players");
+
+        ChannelHandler existing = channel.pipeline().get(ChatSessionDecodeFilter.HANDLER_NAME);
+        if (existing == null) {
+            channel.pipeline().addBefore("decoder", ChatSessionDecodeFilter.HANDLER_NAME, sessionFilter);
+        } else if (existing != sessionFilter) {
+            channel.pipeline().replace(ChatSessionDecodeFilter.HANDLER_NAME, ChatSessionDecodeFilter.HANDLER_NAME, sessionFilter);
         }
     }
     
-    public void uninjectPlayer(Player player) {
-        try {
-            var connection = ConnectionHelper.findConnectionByAddress(player.getAddress().getAddress());
-            if (connection != null) {
-                var channel = connection.channel;
+    public void uninject() {
+        // Remove from every connection, not just online players, as bootstrap injection
+        // also covers connections that are still logging in.
+        List<Connection> connections = ConnectionHelper.getAllServerConnections();
+        synchronized (connections) {
+            for (Connection connection : connections) {
+                Channel channel = connection.channel;
                 if (channel != null && channel.pipeline().get(HANDLER_NAME) != null) {
                     channel.pipeline().remove(HANDLER_NAME);
                 }
+                if (channel != null && channel.pipeline().get(ChatSessionDecodeFilter.HANDLER_NAME) != null) {
+                    channel.pipeline().remove(ChatSessionDecodeFilter.HANDLER_NAME);
+                }
             }
-        } catch (Exception e) {
-            plugin.getLogger().warning("Failed to remove packet listener for player " + 
-                player.getName() + ": " + e.getMessage());
+        }
+        
+        if (policy.enableLogging()) {
+            logger.info("Packet listener removed from all players");
         }
     }
-
+    
     @Override
     public void write(ChannelHandlerContext ctx, Object packet, ChannelPromise promise) throws Exception {
-        // Handle outgoing packets
-        if (packet instanceof ClientboundLoginPacket loginPacket && plugin.isHideSecureChatWarning()) {
-            packet = new ClientboundLoginPacket(
-                loginPacket.playerId(),
-                loginPacket.hardcore(),
-                loginPacket.levels(),
-                loginPacket.maxPlayers(),
-                loginPacket.chunkRadius(),
-                loginPacket.simulationDistance(),
-                loginPacket.reducedDebugInfo(),
-                loginPacket.showDeathScreen(),
-                loginPacket.doLimitedCrafting(),
-                loginPacket.commonPlayerSpawnInfo(),
-                true // Pretend enforce-secureprofile is true to hide the popup warning.
-            );
-            
-            if (plugin.isLoggingEnabled()) {
-                plugin.getLogger().info("✓ Spoofed secure profile in login packet to hide chat warning");
-            }
-        } else if (packet instanceof ClientboundPlayerChatPacket chatPacket) {
-            if (plugin.isStripServerSignatures()) {
-                // Convert player chat to system chat to strip server signatures
-                try {
-                    // Access the known fields (from previous testing).
-                    Field bodyField = ClientboundPlayerChatPacket.class.getDeclaredField("body");
-                    Field chatTypeField = ClientboundPlayerChatPacket.class.getDeclaredField("chatType");
-                    
-                    bodyField.setAccessible(true);
-                    chatTypeField.setAccessible(true);
-                    
-                    Object bodyValue = bodyField.get(chatPacket);
-                    ChatType.Bound chatTypeBound = (ChatType.Bound) chatTypeField.get(chatPacket);
-                    
-                    // Extract content from the Packed body object
-                    Method contentMethod = bodyValue.getClass().getDeclaredMethod("content");
-                    contentMethod.setAccessible(true);
-                    String textContent = (String) contentMethod.invoke(bodyValue);
-                    
-                    Component rawMessage = Component.literal(textContent);
-                    
-                    // Use the direct decorate method available in ChatType.Bound
-                    Method decorateMethod = ChatType.Bound.class.getDeclaredMethod("decorate", Component.class);
-                    decorateMethod.setAccessible(true);
-                    Component decoratedMessage = (Component) decorateMethod.invoke(chatTypeBound, rawMessage);
-                    
-                    // Create system chat packet with the properly decorated message
-                    ClientboundSystemChatPacket systemChatPacket = new ClientboundSystemChatPacket(decoratedMessage, false);
-
-                    if (plugin.isLoggingEnabled()) {
-                        plugin.getLogger().info("✓ Converted chat packet to system chat (stripped signature)");
-                    }
-
-                    super.write(ctx, systemChatPacket, promise);
-                    return;
-                } catch (Exception e) {
-                    plugin.getLogger().warning("Failed to convert chat packet: " + e.getMessage());
-                }
+        PacketRewriter<Object> rewriter = outboundRewriters.find(packet);
+        if (rewriter == null) {
+            // Nearly every packet; nothing is timed or captured for these
+            super.write(ctx, packet, promise);
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        PacketCapture activeCapture = capture;
+        if (activeCapture != null) {
+            activeCapture.record(ctx.channel(), packet);
+        }
+        // Read the policy once so a concurrent reload can't change it mid-packet
+        Object outbound = rewriter.rewrite(ctx, packet, policy);
+        metrics.recordWrite(System.nanoTime() - startTime);
+
+        // A null result means the packet was held back for a slow client
+        if (outbound == null) {
+            promise.trySuccess();
+            return;
+        }
+        super.write(ctx, outbound, promise);
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            ChatBacklog backlog = ctx.channel().attr(CHAT_BACKLOG).get();
+            if (backlog != null && !backlog.isEmpty()) {
+                writeBacklog(ctx, backlog);
+                ctx.flush();
             }
         }
-        
-        super.write(ctx, packet, promise);
+        super.channelWritabilityChanged(ctx);
     }
     
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        // Send what is still held rather than losing it along with the handler
+        ChatBacklog backlog = ctx.channel().attr(CHAT_BACKLOG).getAndSet(null);
+        if (backlog != null && !backlog.isEmpty() && ctx.channel().isActive()) {
+            metrics.recordChatCoalesced(backlog.size(), backlog.getSkipped());
+            ctx.channel().writeAndFlush(backlog.drain(), ctx.channel().voidPromise());
+        }
+        super.handlerRemoved(ctx);
+    }
+
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object packet) throws Exception {
-        // Handle incoming packets
-        if (packet instanceof ServerboundChatSessionUpdatePacket sessionUpdatePacket) {
-            if (plugin.isNeutraliseChatSessions()) {
-                try {
-                    // Neutralise the packet by creating a new one with null public key
-                    // This maintains communication flow while preventing secure session establishment
-                    RemoteChatSession.Data originalData = sessionUpdatePacket.chatSession();
-                    // Intentionally pass null to neutralise the public key - this breaks secure chat while maintaining packet flow
-                    @SuppressWarnings("null")
-                    RemoteChatSession.Data neutralisedData = new RemoteChatSession.Data(originalData.sessionId(), null);
-                    ServerboundChatSessionUpdatePacket neutralisedPacket = new ServerboundChatSessionUpdatePacket(neutralisedData);
-                    
-                    if (plugin.isLoggingEnabled()) {
-                        plugin.getLogger().info("✓ Neutralised chat session update packet");
-                    }
-
-                    super.channelRead(ctx, neutralisedPacket);
-                    return;
-                } catch (Exception e) {
-                    if (plugin.isLoggingEnabled()) {
-                        plugin.getLogger().warning("Failed to neutralise chat session packet - falling back to blocking: " + e.getMessage());
-                    }
-                    return;
+        PacketRewriter<Object> rewriter = inboundRewriters.find(packet);
+        if (rewriter == null) {
+            super.channelRead(ctx, packet);
+            return;
+        }
+
+        long startTime = System.nanoTime();
+        PacketCapture activeCapture = capture;
+        if (activeCapture != null) {
+            activeCapture.record(ctx.channel(), packet);
+        }
+        Object inbound = rewriter.rewrite(ctx, packet, policy);
+        metrics.recordRead(System.nanoTime() - startTime);
+
+        // A null result means the packet was blocked
+        if (inbound != null) {
+            super.channelRead(ctx, inbound);
+        }
+    }
+
+    private Object spoofLogin(ChannelHandlerContext ctx, ClientboundLoginPacket loginPacket,
+                              BlockReportsPolicy policy) {
+        resolveExemptions(ctx, policy);
+
+        if (!policy.hideSecureChatWarning()) {
+            return loginPacket;
+        }
+
+        ClientboundLoginPacket spoofedPacket = new ClientboundLoginPacket(
+            loginPacket.playerId(),
+            loginPacket.hardcore(),
+            loginPacket.levels(),
+            loginPacket.maxPlayers(),
+            loginPacket.chunkRadius(),
+            loginPacket.simulationDistance(),
+            loginPacket.reducedDebugInfo(),
+            loginPacket.showDeathScreen(),
+            loginPacket.doLimitedCrafting(),
+            loginPacket.commonPlayerSpawnInfo(),
+            true // Pretend enforce-secureprofile is true to hide the popup warning.
+        );
+
+        metrics.recordLoginSpoofed();
+        logEvent(ctx, PacketType.LOGIN, Action.SPOOFED);
+        return spoofedPacket;
+    }
+
+    private void resolveExemptions(ChannelHandlerContext ctx, BlockReportsPolicy policy) {
+        // The client answers the login packet with its chat session, so exemptions have to be
+        // on the channel before the packet leaves. The player exists by the time it is sent.
+        // This runs on the event loop, off the main thread, see ExemptionListener.compute.
+        ToIntBiFunction<Player, BlockReportsPolicy> resolver = exemptionResolver;
+        ServerGamePacketListenerImpl gameListener = gameListener(ctx);
+        if (resolver == null || gameListener == null) {
+            return;
+        }
+
+        try {
+            ChannelExemptions.set(ctx.channel(), resolver.applyAsInt(gameListener.player.getBukkitEntity(), policy));
+        } catch (Exception e) {
+            // Worked out again on the next world change or reload
+            logger.warning("Failed to resolve exemptions at login: " + e.getMessage());
+        }
+    }
+
+    private Object convertPlayerChat(ChannelHandlerContext ctx, ClientboundPlayerChatPacket chatPacket,
+                                     BlockReportsPolicy policy) {
+        if (!hidesSignedChat(ctx, policy)) {
+            return chatPacket;
+        }
+
+        if (chatPacket.signature() != null) {
+            trackHiddenSignature(ctx, chatPacket.signature());
+        }
+
+        // Convert player chat to system chat to strip server signatures
+        try {
+            // Every receiver of a broadcast shares the packet converted for the first one.
+            ClientboundSystemChatPacket systemChatPacket = conversionCache.convert(chatPacket);
+
+            metrics.recordChatConverted();
+            logEvent(ctx, PacketType.PLAYER_CHAT, Action.CONVERTED);
+
+            if (holdForSlowClient(ctx, systemChatPacket, policy.slowClientChatLimit())) {
+                return null;
+            }
+
+            if (policy.preEncodeBroadcasts()) {
+                // Serialise once per broadcast; falls back to the packet if this pipeline can't take a frame
+                ByteBuf frame = frameCache.frameFor(ctx, systemChatPacket);
+                if (frame != null) {
+                    return frame;
                 }
             }
+            return systemChatPacket;
+        } catch (Exception e) {
+            metrics.recordConversionFailure();
+            logEvent(ctx, PacketType.PLAYER_CHAT, Action.FAILED);
+            logger.warning("Failed to convert chat packet: " + e.getMessage());
+            return chatPacket;
+        }
+    }
+
+    /**
+     * While the channel is unwritable, converted chat is held in a bounded backlog instead
+     * of piling up in the outbound buffer. Returns true if the packet was held. A backlog is
+     * still sent first if a reload turned holding off while lines were held.
+     */
+    private boolean holdForSlowClient(ChannelHandlerContext ctx, ClientboundSystemChatPacket packet, int limit) {
+        Attribute<ChatBacklog> backlogAttribute = ctx.channel().attr(CHAT_BACKLOG);
+        ChatBacklog backlog = backlogAttribute.get();
+
+        if (limit <= 0 || ctx.channel().isWritable()) {
+            // Writable again before the writability event arrived, or no longer holding, so send
+            // what was held first to keep chat in order
+            if (backlog != null && !backlog.isEmpty()) {
+                writeBacklog(ctx, backlog);
+            }
+            return false;
+        }
+
+        if (backlog == null) {
+            backlog = new ChatBacklog();
+            backlogAttribute.set(backlog);
+        }
+        backlog.add(packet.content(), limit);
+        return true;
+    }
+
+    private Object orderBehindBacklog(ChannelHandlerContext ctx, ClientboundSystemChatPacket systemChatPacket,
+                                      BlockReportsPolicy policy) {
+        // While converted chat is held back, other chat queues behind it so nothing overtakes
+        // it. Action bar messages aren't part of the chat log, so they go straight through.
+        ChatBacklog backlog = ctx.channel().attr(CHAT_BACKLOG).get();
+        if (backlog == null || backlog.isEmpty() || systemChatPacket.overlay()) {
+            return systemChatPacket;
+        }
+
+        if (ctx.channel().isWritable() || policy.slowClientChatLimit() <= 0) {
+            writeBacklog(ctx, backlog);
+            return systemChatPacket;
+        }
+        backlog.add(systemChatPacket.content(), policy.slowClientChatLimit());
+        return null;
+    }
+
+    private void writeBacklog(ChannelHandlerContext ctx, ChatBacklog backlog) {
+        metrics.recordChatCoalesced(backlog.size(), backlog.getSkipped());
+        ctx.write(backlog.drain(), ctx.voidPromise());
+    }
+
+    private Object neutraliseSession(ChannelHandlerContext ctx, ServerboundChatSessionUpdatePacket sessionUpdatePacket,
+                                     BlockReportsPolicy policy) {
+        // Already neutralised by the decode filter
+        if (sessionUpdatePacket.chatSession().profilePublicKey() == null
+                || !policy.neutraliseChatSessions()
+                || ChannelExemptions.has(ChannelExemptions.get(ctx.channel()), ChannelExemptions.KEEP_CHAT_SESSION)) {
+            return sessionUpdatePacket;
+        }
+
+        try {
+            // Neutralise the packet by creating a new one with null public key
+            // This maintains communication flow while preventing secure session establishment
+            RemoteChatSession.Data originalData = sessionUpdatePacket.chatSession();
+            // Intentionally pass null to neutralise the public key - this breaks secure chat while maintaining packet flow
+            @SuppressWarnings("null")
+            RemoteChatSession.Data neutralisedData = new RemoteChatSession.Data(originalData.sessionId(), null);
+            ServerboundChatSessionUpdatePacket neutralisedPacket = new ServerboundChatSessionUpdatePacket(neutralisedData);
+
+            metrics.recordSessionNeutralised();
+            logEvent(ctx, PacketType.CHAT_SESSION_UPDATE, Action.NEUTRALISED);
+            return neutralisedPacket;
+        } catch (Exception e) {
+            logEvent(ctx, PacketType.CHAT_SESSION_UPDATE, Action.FAILED);
+            // Fall back to blocking the packet
+            return null;
         }
+    }
+
+    private Object normaliseChat(ChannelHandlerContext ctx, ServerboundChatPacket chatPacket,
+                                 BlockReportsPolicy policy) {
+        if (!hidesSignedChat(ctx, policy)) {
+            return chatPacket;
+        }
+
+        metrics.recordLastSeenReset();
+        logEvent(ctx, PacketType.CHAT, Action.NORMALISED);
+        return new ServerboundChatPacket(chatPacket.message(), orderTimestamp(ctx, chatPacket.timeStamp()),
+            chatPacket.salt(), signsChat(ctx, policy) ? chatPacket.signature() : null, lastSeenUpdate(ctx));
+    }
+
+    private Object normaliseChatCommand(ChannelHandlerContext ctx, ServerboundChatCommandSignedPacket commandPacket,
+                                        BlockReportsPolicy policy) {
+        if (!hidesSignedChat(ctx, policy)) {
+            return commandPacket;
+        }
+
+        metrics.recordLastSeenReset();
+        logEvent(ctx, PacketType.CHAT_COMMAND, Action.NORMALISED);
+        return new ServerboundChatCommandSignedPacket(commandPacket.command(),
+            orderTimestamp(ctx, commandPacket.timeStamp()), commandPacket.salt(),
+            commandPacket.argumentSignatures(), lastSeenUpdate(ctx));
+    }
+
+    private Object normaliseChatAck(ChannelHandlerContext ctx, ServerboundChatAckPacket ackPacket,
+                                    BlockReportsPolicy policy) {
+        if (!hidesSignedChat(ctx, policy)) {
+            return ackPacket;
+        }
+
+        // The client's own offset only covers messages it saw, so the hidden messages are
+        // acknowledged in its place and its packet is dropped.
+        acknowledgeHidden(ctx);
+        logEvent(ctx, PacketType.CHAT_ACK, Action.DROPPED);
+        return null;
+    }
+
+    private static boolean hidesSignedChat(ChannelHandlerContext ctx, BlockReportsPolicy policy) {
+        // The server still tracks every signed message it sends this player, including ones
+        // from exempt players whose sessions were kept, but the client only sees system chat
+        // and never acknowledges them. The hidden messages are acknowledged on its behalf, what
+        // it reports as last seen is reset and timestamps are kept in order, so the server's
+        // tracked list stays bounded and its last-seen validation never has a reason to kick.
+        return policy.stripServerSignatures()
+            && !ChannelExemptions.has(ChannelExemptions.get(ctx.channel()), ChannelExemptions.KEEP_SIGNED_CHAT);
+    }
+
+    private static boolean signsChat(ChannelHandlerContext ctx, BlockReportsPolicy policy) {
+        return !policy.neutraliseChatSessions()
+            || ChannelExemptions.has(ChannelExemptions.get(ctx.channel()), ChannelExemptions.KEEP_CHAT_SESSION);
+    }
+
+    private void trackHiddenSignature(ChannelHandlerContext ctx, MessageSignature signature) {
+        if (pendingSignedChat(ctx).add(signature) % SYNTHETIC_ACK_THRESHOLD == 0) {
+            // Acknowledge on the client's behalf, as a vanilla client would, so chat from a
+            // player who never speaks doesn't pile up until the server disconnects them. Run
+            // after this write, as the server only tracks the message once it has been sent.
+            // Whatever it hasn't tracked yet is retried at the next multiple or chat message.
+            ctx.channel().eventLoop().execute(() -> acknowledgeHidden(ctx));
+        }
+    }
+
+    private void acknowledgeHidden(ChannelHandlerContext ctx) {
+        ServerGamePacketListenerImpl gameListener = gameListener(ctx);
+        if (gameListener == null) {
+            return;
+        }
+        try {
+            pendingSignedChat(ctx).acknowledge(gameListener);
+        } catch (LastSeenMessagesValidator.ValidationException e) {
+            // Can't happen with the offset bounded by the tracked count; left pending if it does
+            logger.warning("Failed to acknowledge hidden chat: " + e.getMessage());
+        }
+    }
+
+    private static ServerGamePacketListenerImpl gameListener(ChannelHandlerContext ctx) {
+        return ctx.pipeline().get("packet_handler") instanceof Connection connection
+            && connection.getPacketListener() instanceof ServerGamePacketListenerImpl gameListener
+            ? gameListener : null;
+    }
 
-        super.channelRead(ctx, packet);
+    private static PendingSignedChat pendingSignedChat(ChannelHandlerContext ctx) {
+        // Only touched from this channel's event loop
+        Attribute<PendingSignedChat> attribute = ctx.channel().attr(PENDING_SIGNED_CHAT);
+        PendingSignedChat pending = attribute.get();
+        if (pending == null) {
+            pending = new PendingSignedChat();
+            attribute.set(pending);
+        }
+        return pending;
+    }
+
+    private void logEvent(ChannelHandlerContext ctx, PacketType packetType, Action action) {
+        // Only exists while logging is enabled
+        DebugEventLog log = debugLog;
+        if (log != null) {
+            log.record(packetType, action, ctx.channel().id());
+        }
+    }
+
+    private LastSeenMessages.Update lastSeenUpdate(ChannelHandlerContext ctx) {
+        // The hidden messages are acknowledged directly, so the update itself is offset 0,
+        // nothing acknowledged and a zero checksum, which the server treats as "don't check"
+        acknowledgeHidden(ctx);
+        return new LastSeenMessages.Update(0, new BitSet(), (byte) 0);
+    }
+
+    private static Instant orderTimestamp(ChannelHandlerContext ctx, Instant timestamp) {
+        // Only touched from this channel's event loop
+        Attribute<Instant> lastTimestamp = ctx.channel().attr(LAST_CHAT_TIMESTAMP);
+        Instant previous = lastTimestamp.get();
+        if (previous != null && timestamp.isBefore(previous)) {
+            return previous;
+        }
+        lastTimestamp.set(timestamp);
+        return timestamp;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,118 @@
+package com.jellypudding.blockReports.listeners;
+
+import com.jellypudding.blockReports.BlockReportsPolicy;
+import com.jellypudding.blockReports.util.ChannelExemptions;
+import com.jellypudding.blockReports.util.ConnectionHelper;
+import com.jellypudding.blockReports.util.InterceptorMetrics;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import net.minecraft.network.Connection;
+import net.minecraft.network.ConnectionProtocol;
+import net.minecraft.network.PacketDecoder;
+import net.minecraft.network.ProtocolInfo;
+import net.minecraft.network.chat.RemoteChatSession;
+import net.minecraft.network.protocol.game.GamePacketTypes;
+import net.minecraft.network.protocol.game.GameProtocols;
+import net.minecraft.network.protocol.game.ServerGamePacketListener;
+import net.minecraft.network.protocol.game.ServerboundChatSessionUpdatePacket;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sits directly in front of the packet decoder and recognises chat session updates in the
+ * raw frame. Only the session id is read; the public key and its signature are skipped
+ * without being parsed, and a neutralised packet is handed on in place of the frame. The
+ * decoder passes through anything that isn't a ByteBuf, so it never sees these frames.
+ */
+@ChannelHandler.Sharable
+public class ChatSessionDecodeFilter extends ChannelInboundHandlerAdapter {
+
+    public static final String HANDLER_NAME = "blockreports_session_filter";
+
+    private static final int SESSION_UPDATE_ID = resolveSessionUpdateId();
+    private static final VarHandle DECODER_PROTOCOL = resolveDecoderProtocol();
+    // Ids below this are a single byte as a VarInt, so the id can be peeked without decoding
+    private static final int SINGLE_BYTE_ID_LIMIT = 0x80;
+    private static final int UUID_BYTES = 16;
+
+    private final Supplier<BlockReportsPolicy> policy;
+    private final InterceptorMetrics metrics;
+
+    public ChatSessionDecodeFilter(Supplier<BlockReportsPolicy> policy, InterceptorMetrics metrics) {
+        this.policy = policy;
+        this.metrics = metrics;
+    }
+
+    public static boolean isAvailable() {
+        return SESSION_UPDATE_ID >= 0 && SESSION_UPDATE_ID < SINGLE_BYTE_ID_LIMIT;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        // Every inbound frame passes through here, so the id byte is checked before anything else
+        if (msg instanceof ByteBuf frame && frame.readableBytes() > UUID_BYTES
+                && frame.getByte(frame.readerIndex()) == SESSION_UPDATE_ID
+                && policy.get().neutraliseChatSessions() && isInGameProtocol(ctx)
+                && !ChannelExemptions.has(ChannelExemptions.get(ctx.channel()), ChannelExemptions.KEEP_CHAT_SESSION)) {
+            int readerIndex = frame.readerIndex() + 1;
+            UUID sessionId = new UUID(frame.getLong(readerIndex), frame.getLong(readerIndex + Long.BYTES));
+            frame.release();
+
+            // Intentionally pass null to neutralise the public key, matching ChatPacketListener
+            @SuppressWarnings("null")
+            RemoteChatSession.Data neutralisedData = new RemoteChatSession.Data(sessionId, null);
+            metrics.recordSessionNeutralised();
+            ctx.fireChannelRead(new ServerboundChatSessionUpdatePacket(neutralisedData));
+            return;
+        }
+
+        ctx.fireChannelRead(msg);
+    }
+
+    private static boolean isInGameProtocol(ChannelHandlerContext ctx) {
+        // Packet ids are only unique within a protocol. The decoder this filter sits in front of
+        // is swapped together with the protocol, so its protocol is the one this frame is in,
+        // even while the packet listener is still catching up.
+        if (DECODER_PROTOCOL != null && ctx.pipeline().get("decoder") instanceof PacketDecoder<?> decoder) {
+            ProtocolInfo<?> protocol = (ProtocolInfo<?>) DECODER_PROTOCOL.get(decoder);
+            return protocol.id() == ConnectionProtocol.PLAY;
+        }
+        Connection connection = ctx.channel().attr(ConnectionHelper.CONNECTION).get();
+        return connection != null && connection.getPacketListener() instanceof ServerGamePacketListener;
+    }
+
+    private static VarHandle resolveDecoderProtocol() {
+        try {
+            for (Field field : PacketDecoder.class.getDeclaredFields()) {
+                if (field.getType() == ProtocolInfo.class) {
+                    field.setAccessible(true);
+                    return MethodHandles.lookup().unreflectVarHandle(field);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Falls back to checking the packet listener
+        }
+        return null;
+    }
+
+    private static int resolveSessionUpdateId() {
+        AtomicInteger packetId = new AtomicInteger(-1);
+        try {
+            GameProtocols.SERVERBOUND_TEMPLATE.details().listPackets((type, id) -> {
+                if (type == GamePacketTypes.SERVERBOUND_CHAT_SESSION_UPDATE) {
+                    packetId.set(id);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Leaves the filter disabled, the interceptor still neutralises decoded packets
+        }
+        return packetId.get();
+    }
+}
@@ -0,0 +1,71 @@
+package com.jellypudding.blockReports.listeners;
+
+import com.jellypudding.blockReports.BlockReports;
+import com.jellypudding.blockReports.BlockReportsPolicy;
+import com.jellypudding.blockReports.util.ChannelExemptions;
+import com.jellypudding.blockReports.util.ConnectionHelper;
+import io.netty.channel.Channel;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+
+import java.util.Locale;
+
+/**
+ * Works out each player's exemptions by permission, world and client brand, and stores them
+ * on their channel for {@link ChatPacketListener} to read. They are first worked out by the
+ * interceptor as the login packet is sent, then again here whenever they can change.
+ */
+public class ExemptionListener implements Listener {
+
+    private final BlockReports plugin;
+
+    public ExemptionListener(BlockReports plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        refresh(event.getPlayer());
+    }
+
+    public void refreshAll() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            refresh(player);
+        }
+    }
+
+    public void refresh(Player player) {
+        Channel channel = ConnectionHelper.findChannel(player);
+        if (channel != null) {
+            ChannelExemptions.set(channel, compute(player, plugin.getPolicy()));
+        }
+    }
+
+    /**
+     * Also called from the event loop at login, while the main thread is still placing the
+     * player, so it only reads the player's permissions, world and brand and changes nothing.
+     * Permission plugins populate permissions before the login completes, and Bukkit's
+     * permission lookup is a read of a map the main thread doesn't modify at that point.
+     */
+    public static int compute(Player player, BlockReportsPolicy policy) {
+        int exemptions = 0;
+
+        if (player.hasPermission("blockreports.exempt.signatures")
+                || policy.exemptWorlds().contains(player.getWorld().getName())) {
+            exemptions |= ChannelExemptions.KEEP_SIGNED_CHAT;
+        }
+        if (player.hasPermission("blockreports.exempt.sessions")) {
+            exemptions |= ChannelExemptions.KEEP_CHAT_SESSION;
+        }
+
+        String clientBrand = player.getClientBrandName();
+        if (clientBrand != null && policy.exemptClientBrands().contains(clientBrand.toLowerCase(Locale.ROOT))) {
+            exemptions |= ChannelExemptions.KEEP_SIGNED_CHAT | ChannelExemptions.KEEP_CHAT_SESSION;
+        }
+        return exemptions;
+    }
+}
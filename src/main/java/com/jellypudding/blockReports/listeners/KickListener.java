@@ -1,6 +1,9 @@
 package com.jellypudding.blockReports.listeners;
 
 import com.jellypudding.blockReports.BlockReports;
+import com.jellypudding.blockReports.util.DebugEventLog;
+import com.jellypudding.blockReports.util.DebugEventLog.Action;
+import com.jellypudding.blockReports.util.DebugEventLog.PacketType;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
@@ -9,38 +12,46 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerKickEvent;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 public class KickListener implements Listener {
 
+    // Resolved once by name so causes missing from the running API version are skipped.
+    private static final Set<PlayerKickEvent.Cause> CHAT_KICK_CAUSES = resolveChatKickCauses(
+        "OUT_OF_ORDER_CHAT",
+        "TOO_MANY_PENDING_CHATS",
+        "EXPIRED_PROFILE_PUBLIC_KEY",
+        "CHAT_VALIDATION_FAILED",
+        "UNSIGNED_CHAT"
+    );
+
     private final BlockReports plugin;
 
     public KickListener(BlockReports plugin) {
         this.plugin = plugin;
     }
 
+    public static Set<PlayerKickEvent.Cause> getChatKickCauses() {
+        return Set.copyOf(CHAT_KICK_CAUSES);
+    }
+
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
     public void onPlayerKick(PlayerKickEvent event) {
         if (!plugin.isPreventChatKicks()) {
             return;
         }
 
-        try {
-            Class<? extends PlayerKickEvent> kickClass = event.getClass();
-            java.lang.reflect.Method getCause = kickClass.getMethod("getCause");
-            Enum<?> cause = (Enum<?>) getCause.invoke(event);
-            String paperReason = cause.name();
-
-            if (paperReason.equals("OUT_OF_ORDER_CHAT") ||
-                paperReason.equals("TOO_MANY_PENDING_CHATS") ||
-                paperReason.equals("EXPIRED_PROFILE_PUBLIC_KEY") ||
-                paperReason.equals("CHAT_VALIDATION_FAILED") ||
-                paperReason.equals("UNSIGNED_CHAT")) {
+        PlayerKickEvent.Cause cause = event.getCause();
+        if (CHAT_KICK_CAUSES.contains(cause)) {
+            event.setCancelled(true);
+            sendPreventedKickMessage(event, cause.name());
+            return;
+        }
 
-                event.setCancelled(true);
-                sendPreventedKickMessage(event, paperReason);
-                return;
-            }
-        } catch (Exception e) {
-            // Ignore reflection errors and fall back to string checking.
+        // Only kicks without a specific cause need their reason text checked.
+        if (cause != PlayerKickEvent.Cause.UNKNOWN) {
+            return;
         }
 
         String reason = PlainTextComponentSerializer.plainText().serialize(event.reason());
@@ -50,7 +61,21 @@ public class KickListener implements Listener {
         }
     }
 
+    private static Set<PlayerKickEvent.Cause> resolveChatKickCauses(String... names) {
+        Set<PlayerKickEvent.Cause> causes = EnumSet.noneOf(PlayerKickEvent.Cause.class);
+        for (String name : names) {
+            try {
+                causes.add(PlayerKickEvent.Cause.valueOf(name));
+            } catch (IllegalArgumentException ignored) {
+                // Not present in this server version.
+            }
+        }
+        return causes;
+    }
+
     private void sendPreventedKickMessage(PlayerKickEvent event, String reason) {
+        plugin.getMetrics().recordKickPrevented();
+
         // Send message to player about prevented kick
         Component message = Component.text("BlockReports prevented a chat-related kick: ", NamedTextColor.YELLOW)
             .append(Component.text(reason, NamedTextColor.RED))
@@ -58,9 +83,9 @@ public class KickListener implements Listener {
             .append(Component.text("You may need to rejoin the server if you experience issues with chat.", NamedTextColor.GOLD));
         event.getPlayer().sendMessage(message);
 
-        if (plugin.isLoggingEnabled()) {
-            plugin.getLogger().info("Prevented chat-related kick for player " + 
-                event.getPlayer().getName() + ": " + reason);
+        DebugEventLog debugLog = plugin.getDebugLog();
+        if (debugLog != null) {
+            debugLog.record(PacketType.KICK, Action.PREVENTED, event.getPlayer().getUniqueId(), reason);
         }
     }
 }
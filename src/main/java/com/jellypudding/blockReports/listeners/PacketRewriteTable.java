@@ -0,0 +1,30 @@
+package com.jellypudding.blockReports.listeners;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Maps packet classes to the rewriter registered for them. Lookups are a single identity
+ * hash probe on the packet's exact class, so the packets BlockReports doesn't handle, which
+ * are nearly all of them, pass through after one miss however many rewriters are registered.
+ * The table belongs to its interceptor and is never cached anywhere global, so dropping the
+ * interceptor releases the rewriters and everything they capture. Everything must be
+ * registered before the first packet; the table is only read afterwards.
+ */
+final class PacketRewriteTable {
+
+    private final Map<Class<?>, PacketRewriter<Object>> rewriters = new IdentityHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    <T> PacketRewriteTable register(Class<T> type, PacketRewriter<? super T> rewriter) {
+        rewriters.put(type, (PacketRewriter<Object>) rewriter);
+        return this;
+    }
+
+    /**
+     * Returns the rewriter for the packet's class, or null if the packet should pass through.
+     */
+    PacketRewriter<Object> find(Object packet) {
+        return rewriters.get(packet.getClass());
+    }
+}
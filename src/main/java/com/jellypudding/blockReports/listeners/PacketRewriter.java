@@ -0,0 +1,15 @@
+package com.jellypudding.blockReports.listeners;
+
+import com.jellypudding.blockReports.BlockReportsPolicy;
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * Rewrites one packet type on its way through {@link ChatPacketListener}. Returns the packet
+ * to pass on, which may be the original, or null to block it. Rewriters that depend on the
+ * connection's exemptions read them from the channel themselves.
+ */
+@FunctionalInterface
+interface PacketRewriter<T> {
+
+    Object rewrite(ChannelHandlerContext ctx, T packet, BlockReportsPolicy policy);
+}
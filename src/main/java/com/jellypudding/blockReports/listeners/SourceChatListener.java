@@ -0,0 +1,72 @@
+package com.jellypudding.blockReports.listeners;
+
+import com.jellypudding.blockReports.BlockReports;
+import com.jellypudding.blockReports.BlockReportsPolicy;
+import com.jellypudding.blockReports.util.ChannelExemptions;
+import com.jellypudding.blockReports.util.ConnectionHelper;
+import io.netty.channel.Channel;
+import io.papermc.paper.chat.ChatRenderer;
+import io.papermc.paper.event.player.AsyncChatEvent;
+import net.kyori.adventure.audience.Audience;
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends public chat as system messages straight from the chat event, so the server never
+ * builds a player chat packet per receiver that the packet interceptor would then have to
+ * unpack and convert. Chat that doesn't go through the chat event (for example /msg or /me)
+ * is still converted by {@link ChatPacketListener}.
+ */
+public class SourceChatListener implements Listener {
+
+    private final BlockReports plugin;
+
+    public SourceChatListener(BlockReports plugin) {
+        this.plugin = plugin;
+    }
+
+    // Runs last, once mute and filter plugins have had their say, so a cancelled message is
+    // never sent and the final message and renderer are the ones delivered.
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onAsyncChat(AsyncChatEvent event) {
+        BlockReportsPolicy policy = plugin.getPolicy();
+        if (!policy.stripServerSignatures() || !policy.sourceSideChat()) {
+            return;
+        }
+
+        Player source = event.getPlayer();
+        ChatRenderer renderer = event.renderer();
+        Component message = event.message();
+        Component displayName = source.displayName();
+
+        // Take over delivery and leave the event uncancelled, so plugins watching chat (for
+        // example chat bridges) still see it. Only players exempt from stripping stay as
+        // viewers and get the signed message from the server. Other monitors registered after
+        // this one see only those viewers.
+        List<Audience> viewers = new ArrayList<>(event.viewers());
+        event.viewers().clear();
+
+        for (Audience viewer : viewers) {
+            if (keepsSignedChat(viewer)) {
+                event.viewers().add(viewer);
+            } else {
+                viewer.sendMessage(renderer.render(source, displayName, message, viewer));
+            }
+        }
+    }
+
+    private static boolean keepsSignedChat(Audience viewer) {
+        if (!(viewer instanceof Player player)) {
+            return false;
+        }
+        Channel channel = ConnectionHelper.findChannel(player);
+        return channel != null
+            && ChannelExemptions.has(ChannelExemptions.get(channel), ChannelExemptions.KEEP_SIGNED_CHAT);
+    }
+}
@@ -0,0 +1,38 @@
+package com.jellypudding.blockReports.util;
+
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+
+/**
+ * Per-connection exemptions, stored as a bitmask on the channel. They are first worked out on
+ * the connection's event loop as the login packet is sent, because the client answers it with
+ * its chat session before any main thread event fires. After that they are worked out on the
+ * main thread when they can change. Either way the packet path only reads an attribute and
+ * tests a bit.
+ */
+public final class ChannelExemptions {
+
+    /** The player receives signed chat unchanged instead of converted system messages. */
+    public static final int KEEP_SIGNED_CHAT = 1;
+
+    /** The player's chat session is left intact so their own messages stay signed. */
+    public static final int KEEP_CHAT_SESSION = 1 << 1;
+
+    private static final AttributeKey<Integer> EXEMPTIONS = AttributeKey.valueOf("blockreports_exemptions");
+
+    private ChannelExemptions() {
+    }
+
+    public static int get(Channel channel) {
+        Integer exemptions = channel.attr(EXEMPTIONS).get();
+        return exemptions != null ? exemptions : 0;
+    }
+
+    public static void set(Channel channel, int exemptions) {
+        channel.attr(EXEMPTIONS).set(exemptions);
+    }
+
+    public static boolean has(int exemptions, int flag) {
+        return (exemptions & flag) != 0;
+    }
+}
@@ -0,0 +1,64 @@
+package com.jellypudding.blockReports.util;
+
+import net.minecraft.ChatFormatting;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.MutableComponent;
+import net.minecraft.network.protocol.game.ClientboundSystemChatPacket;
+
+import java.util.ArrayDeque;
+
+/**
+ * Chat held back for a connection that can't keep up: converted player chat, and any system
+ * chat sent while something is already held, so it stays in order. Only the newest lines up
+ * to the limit are kept, and they are sent as a single packet once the connection drains.
+ * Only used from the connection's event loop.
+ */
+public final class ChatBacklog {
+
+    private final ArrayDeque<Component> lines = new ArrayDeque<>();
+    private int skipped;
+
+    public void add(Component line, int limit) {
+        while (lines.size() >= limit) {
+            lines.removeFirst();
+            skipped++;
+        }
+        lines.addLast(line);
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    public int size() {
+        return lines.size();
+    }
+
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Merges the held lines, after a note of how many were skipped, into one packet and
+     * empties the backlog.
+     */
+    public ClientboundSystemChatPacket drain() {
+        MutableComponent merged = Component.empty();
+        boolean first = true;
+        if (skipped > 0) {
+            merged.append(Component.literal("[" + skipped + " messages skipped]").withStyle(ChatFormatting.GRAY));
+            first = false;
+        }
+        for (Component line : lines) {
+            if (!first) {
+                merged.append("\n");
+            }
+            merged.append(line);
+            first = false;
+        }
+
+        lines.clear();
+        skipped = 0;
+        return new ClientboundSystemChatPacket(merged, false);
+    }
+}
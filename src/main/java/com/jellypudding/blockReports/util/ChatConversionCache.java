@@ -0,0 +1,54 @@
+package com.jellypudding.blockReports.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import net.minecraft.network.chat.ChatType;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.protocol.game.ClientboundPlayerChatPacket;
+import net.minecraft.network.protocol.game.ClientboundSystemChatPacket;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the converted system chat packet between every receiver of a broadcast.
+ * The server writes a separate player chat packet to each receiver's channel, but they
+ * all carry the same sender, content and chat type binding, so the conversion only
+ * needs to happen once per message.
+ */
+public final class ChatConversionCache {
+
+    private static final long MAXIMUM_SIZE = 1024;
+    private static final long EXPIRE_AFTER_WRITE_SECONDS = 5;
+
+    private final Cache<Key, ClientboundSystemChatPacket> cache = CacheBuilder.newBuilder()
+        .maximumSize(MAXIMUM_SIZE)
+        .expireAfterWrite(EXPIRE_AFTER_WRITE_SECONDS, TimeUnit.SECONDS)
+        .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+        .build();
+
+    public ClientboundSystemChatPacket convert(ClientboundPlayerChatPacket chatPacket) {
+        ChatType.Bound chatType = chatPacket.chatType();
+        String content = chatPacket.body().content();
+        Key key = new Key(chatPacket.sender(), content, chatType);
+
+        ClientboundSystemChatPacket converted = cache.getIfPresent(key);
+        if (converted == null) {
+            // Two event loops may race to convert the same message, which only costs a duplicate
+            // conversion and is cheaper than blocking one loop on the other.
+            Component decoratedMessage = chatType.decorate(Component.literal(content));
+            converted = new ClientboundSystemChatPacket(decoratedMessage, false);
+            cache.put(key, converted);
+        }
+        return converted;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    // The converted packet only depends on the content and chat type binding,
+    // so the per-receiver parts of the packet (index, last seen) are not part of the key.
+    private record Key(UUID sender, String content, ChatType.Bound chatType) {
+    }
+}
@@ -2,68 +2,218 @@ package com.jellypudding.blockReports.util;
 
 import net.minecraft.network.Connection;
 import net.minecraft.server.MinecraftServer;
-import net.minecraft.server.network.ServerGamePacketListenerImpl;
+import net.minecraft.server.network.ServerLoginPacketListenerImpl;
 import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import org.bukkit.entity.Player;
 
 import java.lang.reflect.Field;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.net.InetSocketAddress;
-import java.net.InetAddress;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ConnectionHelper {
 
-    private static Field cachedConnectionField = null;
+    public static final AttributeKey<Connection> CONNECTION = AttributeKey.valueOf("blockreports_connection");
+    public static final AttributeKey<SocketAddress> INDEXED_ADDRESS = AttributeKey.valueOf("blockreports_indexed_address");
+    public static final AttributeKey<UUID> PLAYER_ID = AttributeKey.valueOf("blockreports_player_id");
 
-    public static Connection findConnectionByAddress(InetAddress playerAddress) {
-        for (Connection activeConnection : getAllServerConnections()) {
-            if (activeConnection.getRemoteAddress() instanceof InetSocketAddress socketAddr) {
-                if (socketAddr.getAddress() == playerAddress) {
-                    return activeConnection;
-                }
-            }
+    private static final Map<SocketAddress, Channel> channelsByAddress = new ConcurrentHashMap<>();
+    private static final Map<UUID, Channel> channelsByPlayer = new ConcurrentHashMap<>();
+
+    private static volatile LoginConnectionField cachedLoginConnectionField = null;
+
+    private static final String LOGIN_CONNECTION_CLASS = "io.papermc.paper.connection.PaperPlayerLoginConnection";
+
+    /**
+     * Adds a connection to the index, keyed by its full remote address (host and port).
+     * Safe to call repeatedly, for example when a proxy has rewritten the address.
+     */
+    public static void track(Connection connection) {
+        if (connection.channel != null) {
+            track(connection.channel, connection);
+        }
+    }
+
+    /**
+     * Indexes a connection from the server's channel initialiser, before any packet has been
+     * read, so it can be found by address whichever way the interceptor is injected.
+     */
+    public static void trackNewChannel(Channel channel) {
+        if (channel.pipeline().get("packet_handler") instanceof Connection connection) {
+            track(channel, connection);
         }
-        return null;
+    }
+
+    public static void track(Channel channel, Connection connection) {
+        SocketAddress address = currentAddress(channel, connection);
+        if (address == null) {
+            return;
+        }
+
+        channel.attr(CONNECTION).set(connection);
+        SocketAddress previous = channel.attr(INDEXED_ADDRESS).getAndSet(address);
+        if (previous != null && !previous.equals(address)) {
+            channelsByAddress.remove(previous, channel);
+        }
+        channelsByAddress.put(address, channel);
+
+        if (previous == null) {
+            channel.closeFuture().addListener(future -> untrack(channel));
+        }
+    }
+
+    public static void untrack(Channel channel) {
+        SocketAddress address = channel.attr(INDEXED_ADDRESS).get();
+        if (address != null) {
+            channelsByAddress.remove(address, channel);
+        }
+        UUID playerId = channel.attr(PLAYER_ID).get();
+        if (playerId != null) {
+            channelsByPlayer.remove(playerId, channel);
+        }
+    }
+
+    public static void bindPlayer(UUID playerId, Channel channel) {
+        UUID previous = channel.attr(PLAYER_ID).getAndSet(playerId);
+        if (previous != null && !previous.equals(playerId)) {
+            channelsByPlayer.remove(previous, channel);
+        }
+        channelsByPlayer.put(playerId, channel);
+    }
+
+    /**
+     * Looks up an indexed connection. A miss returns null rather than rescanning every
+     * connection; connections are re-keyed through {@link #track} when their address changes.
+     */
+    public static Channel findChannelByAddress(SocketAddress address) {
+        return lookup(address);
+    }
+
+    public static Channel findChannel(Player player) {
+        Channel channel = channelsByPlayer.get(player.getUniqueId());
+        if (channel != null) {
+            return channel;
+        }
+
+        SocketAddress address = player.getAddress();
+        if (address == null) {
+            return null;
+        }
+        channel = findChannelByAddress(address);
+        if (channel != null) {
+            bindPlayer(player.getUniqueId(), channel);
+        }
+        return channel;
     }
 
     public static Channel getConnectionChannel(Connection connection) {
-        return Objects.requireNonNull(connection.channel, 
+        return Objects.requireNonNull(connection.channel,
             "Network channel is null for connection: " + connection.getRemoteAddress());
     }
 
-    public static Connection requireConnectionByAddress(InetAddress address) {
-        Connection found = findConnectionByAddress(address);
-        return Objects.requireNonNull(found, 
-            "No active connection found for address: " + address);
+    /**
+     * True if Paper's login connection holds a field {@link #findLoginConnection} can read.
+     */
+    public static boolean isLoginConnectionAvailable() {
+        try {
+            Class<?> loginConnectionClass = Class.forName(LOGIN_CONNECTION_CLASS, false, ConnectionHelper.class.getClassLoader());
+            return findLoginConnectionField(loginConnectionClass) != null;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
     }
 
-    public static Connection extractConnection(ServerGamePacketListenerImpl packetListener) {
+    /**
+     * Finds the network connection behind one of Paper's login-time connection objects, which
+     * wrap the login packet listener but don't expose it. Returns null if it can't be reached.
+     */
+    public static Connection findLoginConnection(Object loginConnection) {
         try {
-            if (cachedConnectionField == null) {
-                cachedConnectionField = findConnectionField();
+            LoginConnectionField field = cachedLoginConnectionField;
+            if (field == null || field.owner() != loginConnection.getClass()) {
+                field = findLoginConnectionField(loginConnection.getClass());
+                if (field == null) {
+                    return null;
+                }
+                cachedLoginConnectionField = field;
             }
-            return (Connection) cachedConnectionField.get(packetListener);
-        } catch (ReflectiveOperationException e) {
-            throw new RuntimeException("Failed to extract network connection from packet listener", e);
+
+            Object value = field.field().get(loginConnection);
+            if (value instanceof ServerLoginPacketListenerImpl loginListener) {
+                return loginListener.connection;
+            }
+            return value instanceof Connection connection ? connection : null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
         }
     }
 
-    public static Iterable<Connection> getAllServerConnections() {
+    public static List<Connection> getAllServerConnections() {
         return MinecraftServer.getServer().getConnection().getConnections();
     }
 
-    private static Field findConnectionField() throws NoSuchFieldException {
-        Class<?> currentClass = ServerGamePacketListenerImpl.class;
+    /**
+     * Re-indexes every server connection. Only needed once, for connections that were open
+     * before tracking began.
+     */
+    public static void refreshIndex() {
+        List<Connection> connections = getAllServerConnections();
+        synchronized (connections) {
+            for (Connection connection : connections) {
+                track(connection);
+            }
+        }
+    }
+
+    public static void clearIndex() {
+        channelsByAddress.clear();
+        channelsByPlayer.clear();
+    }
+
+    private static Channel lookup(SocketAddress address) {
+        Channel channel = channelsByAddress.get(address);
+        if (channel == null) {
+            return null;
+        }
+
+        // The key may be stale if a proxy rewrote the connection's address after it was indexed,
+        // in which case the connection is moved to its current address.
+        Connection connection = channel.attr(CONNECTION).get();
+        if (connection == null) {
+            channelsByAddress.remove(address, channel);
+            return null;
+        }
+        if (!address.equals(currentAddress(channel, connection))) {
+            track(channel, connection);
+            return null;
+        }
+        return channel;
+    }
 
-        while (currentClass != null) {
+    private static SocketAddress currentAddress(Channel channel, Connection connection) {
+        // Connection only learns its address once the channel is active, so fall back to
+        // the socket address for channels indexed while they are being initialised.
+        SocketAddress address = connection.getRemoteAddress();
+        return address != null ? address : channel.remoteAddress();
+    }
+
+    private record LoginConnectionField(Class<?> owner, Field field) {
+    }
+
+    private static LoginConnectionField findLoginConnectionField(Class<?> owner) {
+        for (Class<?> currentClass = owner; currentClass != null; currentClass = currentClass.getSuperclass()) {
             for (Field field : currentClass.getDeclaredFields()) {
-                if (Connection.class.isAssignableFrom(field.getType())) {
+                if (Connection.class.isAssignableFrom(field.getType())
+                        || ServerLoginPacketListenerImpl.class.isAssignableFrom(field.getType())) {
                     field.setAccessible(true);
-                    return field;
+                    return new LoginConnectionField(owner, field);
                 }
             }
-            currentClass = currentClass.getSuperclass();
         }
-
-        throw new NoSuchFieldException("Could not find Connection field in ServerGamePacketListenerImpl");
+        return null;
     }
-}
\ No newline at end of file
+}
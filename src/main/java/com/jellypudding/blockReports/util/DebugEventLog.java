@@ -0,0 +1,209 @@
+package com.jellypudding.blockReports.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Debug event sink for the packet path. Callers record fixed-shape events into a bounded
+ * lock-free ring buffer, which a background thread drains to the plugin log or to a
+ * rotating file. Recording never blocks or builds strings; when the buffer is full the
+ * event is dropped and counted instead.
+ */
+public final class DebugEventLog {
+
+    public enum PacketType {
+        LOGIN,
+        PLAYER_CHAT,
+        CHAT_SESSION_UPDATE,
+        CHAT,
+        CHAT_COMMAND,
+        CHAT_ACK,
+        KICK
+    }
+
+    public enum Action {
+        SPOOFED,
+        CONVERTED,
+        NEUTRALISED,
+        NORMALISED,
+        DROPPED,
+        FAILED,
+        PREVENTED
+    }
+
+    private static final int CAPACITY = 8192;
+    private static final int MASK = CAPACITY - 1;
+    private static final long IDLE_PARK_NANOS = 100_000_000L;
+    private static final int FILE_LIMIT_BYTES = 5 * 1024 * 1024;
+    private static final int FILE_COUNT = 5;
+
+    private static final PacketType[] PACKET_TYPES = PacketType.values();
+    private static final Action[] ACTIONS = Action.values();
+
+    // Each slot's sequence tells producers and the consumer whose turn it is (Vyukov bounded queue)
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private final int[] kinds = new int[CAPACITY];
+    private final long[] timestamps = new long[CAPACITY];
+    private final Object[] sources = new Object[CAPACITY];
+    private final Object[] details = new Object[CAPACITY];
+
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    private final LongAdder dropped = new LongAdder();
+    private long reportedDropped;
+
+    private final Logger logger;
+    private final FileHandler fileHandler;
+    private final Thread drainThread;
+    private volatile boolean running = true;
+
+    /**
+     * @param logDirectory directory for the rotating debug files, or null to use the plugin log
+     */
+    public DebugEventLog(Logger logger, Path logDirectory) {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+
+        this.logger = logger;
+        this.fileHandler = logDirectory != null ? openFileHandler(logDirectory) : null;
+
+        drainThread = new Thread(this::drainLoop, "BlockReports-DebugLog");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    /**
+     * Records an event without blocking. The source is a channel id or player id and is
+     * only turned into text on the drain thread.
+     */
+    public void record(PacketType packetType, Action action, Object source) {
+        record(packetType, action, source, null);
+    }
+
+    /**
+     * Records an event with an extra detail, such as a kick reason, written after the source.
+     */
+    public void record(PacketType packetType, Action action, Object source, Object detail) {
+        long position = tail.get();
+        int index;
+        while (true) {
+            index = (int) (position & MASK);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                dropped.increment();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+
+        kinds[index] = packetType.ordinal() << 8 | action.ordinal();
+        timestamps[index] = System.currentTimeMillis();
+        sources[index] = source;
+        details[index] = detail;
+        sequences.lazySet(index, position + 1);
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops the drain thread after it has written everything recorded so far.
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(drainThread);
+        try {
+            drainThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (fileHandler != null) {
+            fileHandler.close();
+        }
+    }
+
+    private FileHandler openFileHandler(Path logDirectory) {
+        try {
+            Files.createDirectories(logDirectory);
+            FileHandler handler = new FileHandler(logDirectory.resolve("debug-%g.log").toString(),
+                FILE_LIMIT_BYTES, FILE_COUNT, true);
+            handler.setFormatter(new Formatter() {
+                @Override
+                public String format(LogRecord record) {
+                    return record.getMessage() + System.lineSeparator();
+                }
+            });
+            return handler;
+        } catch (IOException e) {
+            logger.warning("Failed to open debug log file, logging to console instead: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+        drain();
+    }
+
+    private int drain() {
+        int drained = 0;
+        while (true) {
+            int index = (int) (head & MASK);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+
+            int kind = kinds[index];
+            long timestamp = timestamps[index];
+            Object source = sources[index];
+            Object detail = details[index];
+            sources[index] = null;
+            details[index] = null;
+            sequences.lazySet(index, head + CAPACITY);
+            head++;
+            drained++;
+
+            write(Instant.ofEpochMilli(timestamp) + " " + PACKET_TYPES[kind >>> 8] + " "
+                + ACTIONS[kind & 0xFF] + " source=" + source + (detail != null ? " detail=" + detail : ""));
+        }
+
+        long totalDropped = dropped.sum();
+        if (totalDropped != reportedDropped) {
+            write("Debug event buffer overflowed, " + (totalDropped - reportedDropped) + " events dropped");
+            reportedDropped = totalDropped;
+        }
+        return drained;
+    }
+
+    private void write(String line) {
+        if (fileHandler != null) {
+            fileHandler.publish(new LogRecord(Level.INFO, line));
+        } else {
+            logger.info("[Debug] " + line);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.jellypudding.blockReports.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the packet interceptor. Every update is a
+ * {@link LongAdder} increment, so event loops recording at the same time don't contend.
+ */
+public final class InterceptorMetrics {
+
+    private final LongAdder chatConverted = new LongAdder();
+    private final LongAdder loginSpoofed = new LongAdder();
+    private final LongAdder sessionsNeutralised = new LongAdder();
+    private final LongAdder conversionFailures = new LongAdder();
+    private final LongAdder lastSeenResets = new LongAdder();
+    private final LongAdder kicksPrevented = new LongAdder();
+    private final LongAdder chatCoalesced = new LongAdder();
+    private final LongAdder chatSkipped = new LongAdder();
+    private final LongAdder signedStateTrimmed = new LongAdder();
+    private final LongAdder signedStateBytesFreed = new LongAdder();
+
+    private final LatencyHistogram writeLatency = new LatencyHistogram();
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+
+    public void recordChatConverted() {
+        chatConverted.increment();
+    }
+
+    public void recordLoginSpoofed() {
+        loginSpoofed.increment();
+    }
+
+    public void recordSessionNeutralised() {
+        sessionsNeutralised.increment();
+    }
+
+    public void recordConversionFailure() {
+        conversionFailures.increment();
+    }
+
+    public void recordLastSeenReset() {
+        lastSeenResets.increment();
+    }
+
+    public void recordKickPrevented() {
+        kicksPrevented.increment();
+    }
+
+    public void recordChatCoalesced(int lines, int skipped) {
+        chatCoalesced.add(lines);
+        chatSkipped.add(skipped);
+    }
+
+    public void recordSignedStateTrimmed(long bytesFreed) {
+        signedStateTrimmed.increment();
+        signedStateBytesFreed.add(bytesFreed);
+    }
+
+    public void recordWrite(long nanos) {
+        writeLatency.record(nanos);
+    }
+
+    public void recordRead(long nanos) {
+        readLatency.record(nanos);
+    }
+
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add("Chat packets converted: " + chatConverted.sum());
+        lines.add("Login packets spoofed: " + loginSpoofed.sum());
+        lines.add("Session updates neutralised: " + sessionsNeutralised.sum());
+        lines.add("Conversion failures: " + conversionFailures.sum());
+        lines.add("Last-seen updates reset: " + lastSeenResets.sum());
+        lines.add("Kicks prevented: " + kicksPrevented.sum());
+        lines.add("Chat lines held for slow clients: " + chatCoalesced.sum() + " sent merged, " + chatSkipped.sum() + " skipped");
+        lines.add("Signed chat state trimmed: " + signedStateTrimmed.sum() + " players, ~"
+            + signedStateBytesFreed.sum() / 1024 + " KiB freed");
+        lines.add("write: " + writeLatency.describe());
+        lines.add("channelRead: " + readLatency.describe());
+        return lines;
+    }
+
+    public String toPrometheus() {
+        StringBuilder builder = new StringBuilder();
+        appendCounter(builder, "blockreports_chat_converted_total", "Player chat packets converted to system chat", chatConverted);
+        appendCounter(builder, "blockreports_login_spoofed_total", "Login packets with a spoofed secure profile flag", loginSpoofed);
+        appendCounter(builder, "blockreports_sessions_neutralised_total", "Chat session updates neutralised", sessionsNeutralised);
+        appendCounter(builder, "blockreports_conversion_failures_total", "Chat packets that failed to convert", conversionFailures);
+        appendCounter(builder, "blockreports_last_seen_resets_total", "Inbound chat last-seen updates reset", lastSeenResets);
+        appendCounter(builder, "blockreports_kicks_prevented_total", "Chat-related kicks prevented", kicksPrevented);
+        appendCounter(builder, "blockreports_chat_coalesced_total", "Chat lines held for slow clients and sent merged", chatCoalesced);
+        appendCounter(builder, "blockreports_chat_skipped_total", "Chat lines skipped for slow clients", chatSkipped);
+        appendCounter(builder, "blockreports_signed_state_trimmed_total", "Players whose signed chat state was trimmed", signedStateTrimmed);
+        appendCounter(builder, "blockreports_signed_state_freed_bytes_total", "Estimated heap freed by trimming signed chat state", signedStateBytesFreed);
+        writeLatency.appendPrometheus(builder, "blockreports_write_latency_seconds", "Time spent in the interceptor's write");
+        readLatency.appendPrometheus(builder, "blockreports_read_latency_seconds", "Time spent in the interceptor's channelRead");
+        return builder.toString();
+    }
+
+    private static void appendCounter(StringBuilder builder, String name, String help, LongAdder counter) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(" counter\n");
+        builder.append(name).append(' ').append(counter.sum()).append('\n');
+    }
+
+    /**
+     * Histogram with power-of-two nanosecond buckets, so recording is a bit count and an add.
+     */
+    static final class LatencyHistogram {
+
+        private static final int BUCKETS = 40;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        LatencyHistogram() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            // Bucket i holds values below 2^i nanoseconds
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+            buckets[bucket].increment();
+            count.increment();
+            totalNanos.add(nanos);
+        }
+
+        long percentileNanos(double percentile) {
+            long total = count.sum();
+            if (total == 0) {
+                return 0;
+            }
+
+            long target = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i].sum();
+                if (seen >= target) {
+                    return 1L << i;
+                }
+            }
+            return 1L << (BUCKETS - 1);
+        }
+
+        String describe() {
+            long total = count.sum();
+            long mean = total == 0 ? 0 : totalNanos.sum() / total;
+            return total + " calls, mean " + mean + "ns, p50 <" + percentileNanos(0.5)
+                + "ns, p99 <" + percentileNanos(0.99) + "ns, p99.9 <" + percentileNanos(0.999) + "ns";
+        }
+
+        void appendPrometheus(StringBuilder builder, String name, String help) {
+            builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            builder.append("# TYPE ").append(name).append(" histogram\n");
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += buckets[i].sum();
+                builder.append(name).append("_bucket{le=\"").append((1L << i) / 1e9).append("\"} ")
+                    .append(cumulative).append('\n');
+            }
+            builder.append(name).append("_bucket{le=\"+Inf\"} ").append(count.sum()).append('\n');
+            builder.append(name).append("_sum ").append(totalNanos.sum() / 1e9).append('\n');
+            builder.append(name).append("_count ").append(count.sum()).append('\n');
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.jellypudding.blockReports.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.util.internal.PlatformDependent;
+import net.minecraft.core.Holder;
+import net.minecraft.core.RegistryAccess;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.chat.ChatType;
+import net.minecraft.network.chat.RemoteChatSession;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.game.ClientboundLoginPacket;
+import net.minecraft.network.protocol.game.ClientboundPlayerChatPacket;
+import net.minecraft.network.protocol.game.ServerboundChatAckPacket;
+import net.minecraft.network.protocol.game.ServerboundChatCommandSignedPacket;
+import net.minecraft.network.protocol.game.ServerboundChatPacket;
+import net.minecraft.network.protocol.game.ServerboundChatSessionUpdatePacket;
+import net.minecraft.world.entity.player.ProfilePublicKey;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Records the chat, login and chat session packets seen by the interceptor, before they are
+ * rewritten, to an append-only binary file. Event loops only queue the packet; a background
+ * thread encodes it and appends it to the file through a memory-mapped region. When the
+ * queue is full the packet is dropped and counted instead.
+ *
+ * <p>The file starts with a magic number and format version, followed by records of a type
+ * byte, nanoseconds since the capture started, the channel's id hash, the payload length and
+ * the payload. A zero type byte marks the end. Payloads use the packets' own stream codecs,
+ * with chat types inlined so a log can be decoded without the server's registries. Session
+ * updates and login packets use their own layout, as the decode filter may already have
+ * removed a session's key and spawn info refers to the server's registries.
+ */
+public final class PacketCapture {
+
+    public static final int MAGIC = 0x42524350;
+    public static final int VERSION = 2;
+
+    private static final int QUEUE_CAPACITY = 65536;
+    private static final long REGION_BYTES = 16L * 1024 * 1024;
+    private static final int RECORD_HEADER_BYTES = 1 + 8 + 4 + 4;
+    private static final long IDLE_PARK_NANOS = 10_000_000L;
+
+    public enum RecordType {
+        PLAYER_CHAT(ClientboundPlayerChatPacket.class, codec(ClientboundPlayerChatPacket.STREAM_CODEC)),
+        LOGIN(ClientboundLoginPacket.class, codec(StreamCodec.of(PacketCapture::writeLogin, PacketCapture::readLogin))),
+        CHAT_SESSION_UPDATE(ServerboundChatSessionUpdatePacket.class, codec(StreamCodec.of(PacketCapture::writeSessionUpdate, PacketCapture::readSessionUpdate))),
+        CHAT(ServerboundChatPacket.class, codec(ServerboundChatPacket.STREAM_CODEC)),
+        CHAT_COMMAND(ServerboundChatCommandSignedPacket.class, codec(ServerboundChatCommandSignedPacket.STREAM_CODEC)),
+        CHAT_ACK(ServerboundChatAckPacket.class, codec(ServerboundChatAckPacket.STREAM_CODEC));
+
+        private static final RecordType[] VALUES = values();
+
+        private static final Map<Class<?>, RecordType> BY_CLASS = new IdentityHashMap<>();
+
+        static {
+            for (RecordType recordType : VALUES) {
+                BY_CLASS.put(recordType.packetClass, recordType);
+            }
+        }
+
+        private final Class<?> packetClass;
+        private final StreamCodec<RegistryFriendlyByteBuf, Object> codec;
+
+        RecordType(Class<?> packetClass, StreamCodec<RegistryFriendlyByteBuf, Object> codec) {
+            this.packetClass = packetClass;
+            this.codec = codec;
+        }
+
+        public boolean isClientbound() {
+            return this == PLAYER_CHAT || this == LOGIN;
+        }
+
+        private byte id() {
+            // Zero is the end marker
+            return (byte) (ordinal() + 1);
+        }
+
+        private static RecordType fromId(byte id) {
+            int index = id - 1;
+            return index >= 0 && index < VALUES.length ? VALUES[index] : null;
+        }
+    }
+
+    public record Record(RecordType type, long nanos, int channel, Object packet) {
+    }
+
+    private final Logger logger;
+    private final Path file;
+    private final RegistryAccess registryAccess;
+    private final long startNanos = System.nanoTime();
+
+    private final Queue<Record> queue = PlatformDependent.newFixedMpscQueue(QUEUE_CAPACITY);
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    private final FileChannel fileChannel;
+    private MappedByteBuffer region;
+    private long regionStart;
+
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    public PacketCapture(Logger logger, Path file, RegistryAccess registryAccess) throws IOException {
+        this.logger = logger;
+        this.file = file;
+        this.registryAccess = registryAccess;
+
+        Files.createDirectories(file.getParent());
+        fileChannel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        region = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_BYTES);
+        region.putInt(MAGIC).putInt(VERSION);
+
+        writerThread = new Thread(this::writeLoop, "BlockReports-Capture");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Queues the packet if it is one of the captured types. Never blocks.
+     */
+    public void record(Channel channel, Object packet) {
+        RecordType type = RecordType.BY_CLASS.get(packet.getClass());
+        if (type == null) {
+            return;
+        }
+        if (!queue.offer(new Record(type, System.nanoTime() - startNanos, channel.id().hashCode(), packet))) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Writes everything queued so far, then trims the file to the data written and closes it.
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            long length = regionStart + region.position();
+            region.force();
+            region = null;
+            // Fails on platforms that can't shrink a mapped file, leaving zeros after the end marker
+            fileChannel.truncate(length);
+        } catch (IOException e) {
+            logger.warning("Failed to trim packet capture " + file.getFileName() + ": " + e.getMessage());
+        } finally {
+            try {
+                fileChannel.close();
+            } catch (IOException ignored) {
+                // Nothing left to write
+            }
+        }
+    }
+
+    /**
+     * Reads every record in a capture file. Chat types are inlined when captured, so the
+     * built-in registries are enough to decode a log away from the server.
+     */
+    public static List<Record> read(Path file, RegistryAccess registryAccess) throws IOException {
+        List<Record> records = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a BlockReports packet capture: " + file);
+            }
+
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                RecordType type = RecordType.fromId(buffer.get());
+                if (type == null) {
+                    break;
+                }
+                long nanos = buffer.getLong();
+                int channelId = buffer.getInt();
+                byte[] payload = new byte[buffer.getInt()];
+                buffer.get(payload);
+
+                RegistryFriendlyByteBuf payloadBuf = new RegistryFriendlyByteBuf(Unpooled.wrappedBuffer(payload), registryAccess);
+                records.add(new Record(type, nanos, channelId, type.codec.decode(payloadBuf)));
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Packet capture is truncated: " + file, e);
+        }
+        return records;
+    }
+
+    private void writeLoop() {
+        ByteBuf payload = Unpooled.buffer();
+        RegistryFriendlyByteBuf payloadBuf = new RegistryFriendlyByteBuf(payload, registryAccess);
+        try {
+            while (running) {
+                if (drain(payloadBuf) == 0) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+            }
+            drain(payloadBuf);
+        } catch (IOException e) {
+            logger.warning("Packet capture stopped, failed to write " + file.getFileName() + ": " + e.getMessage());
+        } finally {
+            payload.release();
+        }
+    }
+
+    private int drain(RegistryFriendlyByteBuf payloadBuf) throws IOException {
+        int drained = 0;
+        Record record;
+        while ((record = queue.poll()) != null) {
+            drained++;
+            payloadBuf.clear();
+            try {
+                record.type().codec.encode(payloadBuf, inlineChatType(record.packet()));
+            } catch (RuntimeException e) {
+                // A packet its codec can't write, counted rather than stopping the capture
+                dropped.increment();
+                continue;
+            }
+
+            int length = payloadBuf.readableBytes();
+            ensureCapacity(RECORD_HEADER_BYTES + length + 1);
+            region.put(record.type().id()).putLong(record.nanos()).putInt(record.channel()).putInt(length);
+            payloadBuf.readBytes(region.slice(region.position(), length));
+            region.position(region.position() + length);
+            written.increment();
+        }
+        return drained;
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        // Always leaves room for the end marker, which the fresh mapping's zeros provide
+        if (region.remaining() >= bytes) {
+            return;
+        }
+        regionStart += region.position();
+        region = fileChannel.map(FileChannel.MapMode.READ_WRITE, regionStart, Math.max(REGION_BYTES, bytes));
+    }
+
+    private static Object inlineChatType(Object packet) {
+        // Registered chat types are written as registry ids, which only the capturing server can
+        // resolve, so the type itself is written instead.
+        if (packet instanceof ClientboundPlayerChatPacket chat && chat.chatType().chatType() instanceof Holder.Reference<ChatType> reference) {
+            ChatType.Bound inlined = new ChatType.Bound(Holder.direct(reference.value()),
+                chat.chatType().name(), chat.chatType().targetName());
+            return new ClientboundPlayerChatPacket(chat.globalIndex(), chat.sender(), chat.index(), chat.signature(),
+                chat.body(), chat.unsignedContent(), chat.filterMask(), inlined);
+        }
+        return packet;
+    }
+
+    private static void writeSessionUpdate(RegistryFriendlyByteBuf buf, Object packet) {
+        // The decode filter hands neutralised updates on with no key, which the packet's own
+        // codec can't write, so whether there is a key is written first.
+        RemoteChatSession.Data session = ((ServerboundChatSessionUpdatePacket) packet).chatSession();
+        buf.writeUUID(session.sessionId());
+        ProfilePublicKey.Data key = session.profilePublicKey();
+        buf.writeBoolean(key != null);
+        if (key != null) {
+            key.write(buf);
+        }
+    }
+
+    private static Object readSessionUpdate(RegistryFriendlyByteBuf buf) {
+        UUID sessionId = buf.readUUID();
+        ProfilePublicKey.Data key = buf.readBoolean() ? new ProfilePublicKey.Data(buf) : null;
+        return new ServerboundChatSessionUpdatePacket(new RemoteChatSession.Data(sessionId, key));
+    }
+
+    private static void writeLogin(RegistryFriendlyByteBuf buf, Object packet) {
+        // Spawn info refers to dimension types in the server's registries, and the interceptor
+        // only copies it, so only the fields it reads are kept.
+        ClientboundLoginPacket login = (ClientboundLoginPacket) packet;
+        buf.writeInt(login.playerId());
+        buf.writeBoolean(login.hardcore());
+        buf.writeVarInt(login.maxPlayers());
+        buf.writeVarInt(login.chunkRadius());
+        buf.writeVarInt(login.simulationDistance());
+        buf.writeBoolean(login.reducedDebugInfo());
+        buf.writeBoolean(login.showDeathScreen());
+        buf.writeBoolean(login.doLimitedCrafting());
+        buf.writeBoolean(login.enforcesSecureChat());
+    }
+
+    private static Object readLogin(RegistryFriendlyByteBuf buf) {
+        return new ClientboundLoginPacket(buf.readInt(), buf.readBoolean(), Set.of(), buf.readVarInt(),
+            buf.readVarInt(), buf.readVarInt(), buf.readBoolean(), buf.readBoolean(), buf.readBoolean(),
+            null, buf.readBoolean());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static StreamCodec<RegistryFriendlyByteBuf, Object> codec(StreamCodec<? super RegistryFriendlyByteBuf, ?> codec) {
+        // Each codec is only used with its own packet class, see RecordType.BY_CLASS
+        return (StreamCodec) codec;
+    }
+}
@@ -0,0 +1,78 @@
+package com.jellypudding.blockReports.util;
+
+import net.minecraft.network.chat.LastSeenMessages;
+import net.minecraft.network.chat.LastSeenMessagesValidator;
+import net.minecraft.network.chat.MessageSignature;
+import net.minecraft.server.network.ServerGamePacketListenerImpl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+
+/**
+ * Signed chat the server is tracking for a connection whose client never saw it, because it
+ * was converted to a system message. The client can't acknowledge what it didn't receive, so
+ * the plugin advances the server's last-seen list past these messages in its place. Only
+ * used from the connection's event loop.
+ */
+public final class PendingSignedChat {
+
+    private static final VarHandle LAST_SEEN_MESSAGES = resolveLastSeenMessages();
+
+    private int count;
+    private MessageSignature lastSignature;
+
+    public static boolean isAvailable() {
+        return LAST_SEEN_MESSAGES != null;
+    }
+
+    /**
+     * Counts a signed message sent to the client and returns how many are now pending.
+     */
+    public int add(MessageSignature signature) {
+        // The server doesn't track a message again if it repeats the previous signature
+        if (!signature.equals(lastSignature)) {
+            count++;
+            lastSignature = signature;
+        }
+        return count;
+    }
+
+    /**
+     * Advances the server's last-seen list past as many pending messages as it already tracks
+     * beyond its window and returns how many that was. The server only starts tracking a
+     * message after sending it, so the rest stay pending until it catches up. Reading the
+     * tracked count and applying the offset under the list's own lock means a concurrent
+     * chat message or newly tracked message can never make the offset invalid.
+     */
+    public int acknowledge(ServerGamePacketListenerImpl gameListener) throws LastSeenMessagesValidator.ValidationException {
+        if (count == 0 || LAST_SEEN_MESSAGES == null) {
+            return 0;
+        }
+
+        LastSeenMessagesValidator validator = (LastSeenMessagesValidator) LAST_SEEN_MESSAGES.get(gameListener);
+        synchronized (validator) {
+            int offset = Math.min(count, validator.trackedMessagesCount() - LastSeenMessages.LAST_SEEN_MESSAGES_MAX_LENGTH);
+            if (offset <= 0) {
+                return 0;
+            }
+            validator.applyOffset(offset);
+            count -= offset;
+            return offset;
+        }
+    }
+
+    private static VarHandle resolveLastSeenMessages() {
+        try {
+            for (Field field : ServerGamePacketListenerImpl.class.getDeclaredFields()) {
+                if (field.getType() == LastSeenMessagesValidator.class) {
+                    field.setAccessible(true);
+                    return MethodHandles.lookup().unreflectVarHandle(field);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Reported by the compatibility probe
+        }
+        return null;
+    }
+}
@@ -0,0 +1,90 @@
+package com.jellypudding.blockReports.util;
+
+import io.netty.channel.Channel;
+import net.minecraft.network.Connection;
+import net.minecraft.network.chat.MessageSignature;
+import net.minecraft.network.chat.MessageSignatureCache;
+import net.minecraft.server.network.ServerGamePacketListenerImpl;
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Swaps each player's signature cache for an empty one. The cache remembers the signatures
+ * of recent signed messages sent to the player so later packets can refer to them by index,
+ * but once signatures are stripped nothing is ever signed and it only holds memory. Any
+ * signed message that does reach the player is sent with its full signature instead.
+ */
+public final class SignedChatStateTrimmer {
+
+    // Estimates for a 64-bit JVM with compressed references
+    private static final long ARRAY_HEADER_BYTES = 16;
+    private static final long REFERENCE_BYTES = 4;
+    private static final long CACHE_OBJECT_BYTES = 16;
+    private static final long SIGNATURE_BYTES = 16 + ARRAY_HEADER_BYTES + MessageSignature.BYTES;
+
+    private static final Field SIGNATURE_CACHE = findField(ServerGamePacketListenerImpl.class, MessageSignatureCache.class);
+    private static final Field CACHE_ENTRIES = findField(MessageSignatureCache.class, MessageSignature[].class);
+
+    private SignedChatStateTrimmer() {
+    }
+
+    public static boolean isAvailable() {
+        return SIGNATURE_CACHE != null && CACHE_ENTRIES != null;
+    }
+
+    /**
+     * Empties the player's signature cache and returns the estimated bytes freed, or 0 if
+     * there was nothing to trim.
+     */
+    public static long trim(Player player) {
+        if (!isAvailable()) {
+            return 0;
+        }
+
+        Channel channel = ConnectionHelper.findChannel(player);
+        Connection connection = channel != null ? channel.attr(ConnectionHelper.CONNECTION).get() : null;
+        if (connection == null || !(connection.getPacketListener() instanceof ServerGamePacketListenerImpl packetListener)) {
+            return 0;
+        }
+
+        try {
+            MessageSignatureCache cache = (MessageSignatureCache) SIGNATURE_CACHE.get(packetListener);
+            MessageSignature[] entries = (MessageSignature[]) CACHE_ENTRIES.get(cache);
+            if (entries.length == 0) {
+                // Already trimmed, for example by a reload
+                return 0;
+            }
+
+            SIGNATURE_CACHE.set(packetListener, new MessageSignatureCache(0));
+            return estimateBytes(entries);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Failed to trim signed chat state for " + player.getName(), e);
+        }
+    }
+
+    private static long estimateBytes(MessageSignature[] entries) {
+        long bytes = CACHE_OBJECT_BYTES + ARRAY_HEADER_BYTES + entries.length * REFERENCE_BYTES;
+        for (MessageSignature entry : entries) {
+            if (entry != null) {
+                bytes += SIGNATURE_BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    private static Field findField(Class<?> owner, Class<?> type) {
+        for (Field field : owner.getDeclaredFields()) {
+            if (field.getType() == type && !Modifier.isStatic(field.getModifiers())) {
+                try {
+                    field.setAccessible(true);
+                    return field;
+                } catch (RuntimeException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+}
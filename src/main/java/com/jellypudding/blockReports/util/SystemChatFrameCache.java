@@ -0,0 +1,161 @@
+package com.jellypudding.blockReports.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.AttributeKey;
+import io.netty.util.IllegalReferenceCountException;
+import net.minecraft.network.RegistryFriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientGamePacketListener;
+import net.minecraft.network.protocol.game.ClientboundSystemChatPacket;
+import net.minecraft.network.protocol.game.GameProtocols;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Encodes each converted broadcast packet once and hands every receiver a retained
+ * duplicate of the same frame. The frame is the packet id and body only, so each channel's
+ * own compression, length prefix and encryption stages still run on it as normal.
+ */
+public final class SystemChatFrameCache {
+
+    private static final long MAXIMUM_SIZE = 256;
+    private static final long EXPIRE_AFTER_WRITE_SECONDS = 5;
+
+    // Outbound handlers that may sit between the interceptor and the encoder and that let
+    // an already encoded ByteBuf through untouched.
+    private static final Set<String> PASS_THROUGH_HANDLERS = Set.of("bundler", "unbundler");
+
+    private static final AttributeKey<Boolean> FRAME_ELIGIBLE = AttributeKey.valueOf("blockreports_frame_eligible");
+
+    private final Logger logger;
+    private final Cache<ClientboundSystemChatPacket, ByteBuf> frames;
+
+    private volatile StreamCodec<ByteBuf, Packet<? super ClientGamePacketListener>> codec;
+    private volatile boolean unavailable;
+
+    public SystemChatFrameCache(Logger logger) {
+        this.logger = logger;
+        // Keys are the shared packets from the conversion cache, so they are compared by identity
+        this.frames = CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(MAXIMUM_SIZE)
+            .expireAfterWrite(EXPIRE_AFTER_WRITE_SECONDS, TimeUnit.SECONDS)
+            .removalListener((RemovalListener<ClientboundSystemChatPacket, ByteBuf>) removal -> {
+                ByteBuf frame = removal.getValue();
+                if (frame != null) {
+                    frame.release();
+                }
+            })
+            .build();
+    }
+
+    /**
+     * Returns a retained duplicate of the encoded frame for this packet, or null when the
+     * caller should write the packet itself.
+     */
+    public ByteBuf frameFor(ChannelHandlerContext ctx, ClientboundSystemChatPacket packet) {
+        if (unavailable || !isEligible(ctx)) {
+            return null;
+        }
+
+        ByteBuf frame = frames.getIfPresent(packet);
+        if (frame == null) {
+            frame = encode(packet);
+            if (frame == null) {
+                return null;
+            }
+            frames.put(packet, frame);
+        }
+
+        try {
+            return frame.retainedDuplicate();
+        } catch (IllegalReferenceCountException e) {
+            // Evicted and released by another event loop between the lookup and the retain
+            return null;
+        }
+    }
+
+    /**
+     * True if the game protocol's clientbound codec could be bound, without which frames are
+     * never pre-encoded.
+     */
+    public boolean isAvailable() {
+        return resolveCodec() != null;
+    }
+
+    public void invalidateAll() {
+        frames.invalidateAll();
+    }
+
+    private ByteBuf encode(ClientboundSystemChatPacket packet) {
+        StreamCodec<ByteBuf, Packet<? super ClientGamePacketListener>> gameCodec = codec;
+        if (gameCodec == null) {
+            gameCodec = resolveCodec();
+            if (gameCodec == null) {
+                return null;
+            }
+        }
+
+        ByteBuf frame = Unpooled.buffer();
+        try {
+            gameCodec.encode(frame, packet);
+            return frame;
+        } catch (RuntimeException e) {
+            frame.release();
+            logger.warning("Failed to pre-encode system chat frame, writing packets individually: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private synchronized StreamCodec<ByteBuf, Packet<? super ClientGamePacketListener>> resolveCodec() {
+        if (codec == null && !unavailable) {
+            try {
+                codec = GameProtocols.CLIENTBOUND_TEMPLATE
+                    .bind(RegistryFriendlyByteBuf.decorator(MinecraftServer.getServer().registryAccess()))
+                    .codec();
+            } catch (RuntimeException e) {
+                unavailable = true;
+                logger.warning("Pre-encoded chat frames are unavailable on this server: " + e.getMessage());
+            }
+        }
+        return codec;
+    }
+
+    /**
+     * A pre-encoded frame is only safe if every outbound handler between the interceptor and
+     * the vanilla encoder passes ByteBufs through. Pipelines are checked once per channel.
+     */
+    private static boolean isEligible(ChannelHandlerContext ctx) {
+        Boolean eligible = ctx.channel().attr(FRAME_ELIGIBLE).get();
+        if (eligible == null) {
+            eligible = checkPipeline(ctx.pipeline().names(), ctx.name());
+            ctx.channel().attr(FRAME_ELIGIBLE).set(eligible);
+        }
+        return eligible;
+    }
+
+    private static boolean checkPipeline(List<String> names, String handlerName) {
+        int encoderIndex = names.indexOf("encoder");
+        int handlerIndex = names.indexOf(handlerName);
+        if (encoderIndex < 0 || handlerIndex < encoderIndex) {
+            return false;
+        }
+
+        for (String name : names.subList(encoderIndex + 1, handlerIndex)) {
+            if (!PASS_THROUGH_HANDLERS.contains(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}